@@ -0,0 +1,42 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(AeadCacheConfig.PREFIX)
+public class AeadCacheConfig {
+
+    public static final String PREFIX = "pseudo.aead-cache";
+
+    /**
+     * The maximum number of KMS AEAD primitives to keep.
+     */
+    private long maximumSize = 2000;
+
+    /**
+     * How long a KMS AEAD primitive may be used before it must be fetched from KMS again.
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+    /**
+     * How long after it was fetched a KMS AEAD primitive is refreshed in the background, while the current one is
+     * still being used. Set to null to disable background refresh, in which case a request fetches the primitive from
+     * KMS when it has expired.
+     */
+    private Duration refreshAfterWrite = Duration.ofMinutes(2);
+
+    /**
+     * The number of threads used to refresh KMS AEAD primitives in the background.
+     */
+    private int refreshThreads = 2;
+
+    /**
+     * If enabled, the KMS AEAD primitives of all configured KEKs (see <code>gcp.kms.key-uris</code>) are fetched at
+     * startup.
+     */
+    private boolean prewarm = true;
+
+}
@@ -1,9 +1,15 @@
 package no.ssb.dlp.pseudo.service.pseudo;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.KmsClients;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micronaut.context.annotation.Bean;
 import io.micronaut.context.annotation.Factory;
 import jakarta.inject.Named;
 import jakarta.inject.Singleton;
@@ -11,23 +17,64 @@ import lombok.extern.slf4j.Slf4j;
 import no.ssb.dlp.pseudo.core.PseudoException;
 
 import java.security.GeneralSecurityException;
-import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Slf4j
 @Factory
 class AeadCacheFactory {
+
+    static final String CACHE_NAME = "kms_aead";
+
+    /**
+     * Executor used to refresh KMS AEAD primitives, so that neither request threads nor the common fork join pool
+     * wait for KMS.
+     */
+    @Singleton
+    @Named("aeadRefreshExecutor")
+    @Bean(preDestroy = "shutdown")
+    ExecutorService aeadRefreshExecutor(AeadCacheConfig config) {
+        return Executors.newFixedThreadPool(config.getRefreshThreads(), new ThreadFactoryBuilder()
+                .setNameFormat("aead-refresh-%d")
+                .setDaemon(true)
+                .build());
+    }
+
     @Singleton
     @Named("aeadCache")
-    LoadingCache<String, Aead> aeadCache() {
-        return Caffeine.newBuilder()
-                .maximumSize(2000)
-                .expireAfterWrite(Duration.ofMinutes(2))
-                .build(k -> {
-                    try {
-                        return KmsClients.get(k).getAead(k);
-                    } catch (GeneralSecurityException e) {
-                        throw new PseudoException("Error fetching key from KMS:", e);
-                    }
-                });
+    LoadingCache<String, Aead> aeadCache(AeadCacheConfig config,
+                                         @Named("aeadRefreshExecutor") ExecutorService refreshExecutor,
+                                         MeterRegistry meterRegistry) {
+        LoadingCache<String, Aead> cache = newAeadCache(config, refreshExecutor, Ticker.systemTicker(), k -> {
+            try {
+                return KmsClients.get(k).getAead(k);
+            } catch (GeneralSecurityException e) {
+                throw new PseudoException("Error fetching key from KMS:", e);
+            }
+        });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        return cache;
+    }
+
+    static LoadingCache<String, Aead> newAeadCache(AeadCacheConfig config, Executor refreshExecutor, Ticker ticker,
+                                                   CacheLoader<String, Aead> loader) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .executor(refreshExecutor)
+                .ticker(ticker)
+                .recordStats();
+        if (config.getRefreshAfterWrite() != null) {
+            // A primitive that expires before it is due for refresh is never refreshed in the background
+            if (config.getRefreshAfterWrite().compareTo(config.getExpireAfterWrite()) >= 0) {
+                throw new IllegalArgumentException(String.format(
+                        "%s.refresh-after-write (%s) must be shorter than expire-after-write (%s)",
+                        AeadCacheConfig.PREFIX, config.getRefreshAfterWrite(), config.getExpireAfterWrite()));
+            }
+            // Keep serving the current primitive while a new one is fetched in the background
+            builder.refreshAfterWrite(config.getRefreshAfterWrite());
+        }
+        return builder.build(loader);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.crypto.tink.Aead;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.env.Environment;
+import io.micronaut.runtime.event.annotation.EventListener;
+import io.micronaut.runtime.server.event.ServerStartupEvent;
+import io.micronaut.scheduling.annotation.Async;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import no.ssb.dlp.pseudo.service.tink.KmsConfig;
+
+import java.net.URI;
+
+/**
+ * Fetches the KMS AEAD primitives of all configured KEKs at startup, so that the first requests do not have to wait
+ * for KMS.
+ */
+@Singleton
+@Slf4j
+@Requires(notEnv = Environment.TEST)
+@Requires(property = AeadCacheConfig.PREFIX + ".prewarm", notEquals = "false")
+public class AeadCachePrewarmer {
+
+    private final KmsConfig kmsConfig;
+    private final LoadingCache<String, Aead> aeadCache;
+
+    public AeadCachePrewarmer(KmsConfig kmsConfig, @Named("aeadCache") LoadingCache<String, Aead> aeadCache) {
+        this.kmsConfig = kmsConfig;
+        this.aeadCache = aeadCache;
+    }
+
+    @EventListener
+    @Async
+    public void prewarm(final ServerStartupEvent event) {
+        for (URI keyUri : kmsConfig.getKeyUris()) {
+            try {
+                aeadCache.get(keyUri.toString());
+                log.info("Prewarmed KMS AEAD for {}", keyUri);
+            } catch (RuntimeException e) {
+                // Not fatal, the primitive is fetched on first use instead
+                log.warn("Unable to prewarm KMS AEAD for {}", keyUri, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Writes a response that is made up of many small fragments (see {@link PseudoResponseSerializer}) into pooled
+ * Netty buffers, so that the response is sent in a few large chunks instead of one write per fragment.
+ *
+ * <p>The writer owns each buffer until it is passed to the subscriber. A cancellation may happen on another thread
+ * while a fragment is being written, so the writer is synchronized, and a cancelled or failed response releases both
+ * the buffer that is being written and the completed buffers that have not been passed on yet.</p>
+ */
+public class ChunkedResponseWriter {
+
+    private final ByteBufAllocator allocator;
+    private final int chunkSize;
+    private final Deque<ByteBuf> completed = new ArrayDeque<>();
+    private ByteBuf buffer;
+    private boolean released;
+
+    private ChunkedResponseWriter(ByteBufAllocator allocator, int chunkSize) {
+        this.allocator = allocator;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Encode the fragments as UTF-8 into buffers of about <code>chunkSize</code> bytes. A fragment is never split
+     * across buffers, so a fragment that is larger than <code>chunkSize</code> gets a buffer of its own.
+     *
+     * <p>Ownership of each emitted buffer passes to the subscriber, which must release it.</p>
+     *
+     * @param fragments the response fragments
+     * @param allocator the allocator to take the buffers from
+     * @param chunkSize the preferred size of each buffer in bytes
+     */
+    public static Flowable<ByteBuf> write(Flowable<String> fragments, ByteBufAllocator allocator, int chunkSize) {
+        return Flowable.defer(() -> {
+            final ChunkedResponseWriter writer = new ChunkedResponseWriter(allocator, chunkSize);
+            return fragments
+                    .concatMapIterable(writer::append)
+                    .concatWith(Maybe.fromCallable(writer::finish))
+                    .filter(writer::handOver)
+                    .doFinally(writer::release);
+        });
+    }
+
+    /**
+     * @return the buffer that was completed by this fragment, if any
+     */
+    private synchronized List<ByteBuf> append(String fragment) {
+        if (released) {
+            return List.of();
+        }
+        final int maxBytes = ByteBufUtil.utf8MaxBytes(fragment);
+        List<ByteBuf> done = List.of();
+        if (buffer != null && buffer.writableBytes() < maxBytes) {
+            done = List.of(buffer);
+            completed.addLast(buffer);
+            buffer = null;
+        }
+        if (buffer == null) {
+            buffer = allocator.buffer(Math.max(chunkSize, maxBytes));
+        }
+        ByteBufUtil.writeUtf8(buffer, fragment);
+        return done;
+    }
+
+    /**
+     * @return the last buffer, or null if it is empty
+     */
+    private synchronized ByteBuf finish() {
+        final ByteBuf last = buffer;
+        buffer = null;
+        if (released || last == null) {
+            return null;
+        }
+        if (!last.isReadable()) {
+            last.release();
+            return null;
+        }
+        completed.addLast(last);
+        return last;
+    }
+
+    /**
+     * Pass ownership of a completed buffer to the subscriber. Buffers are completed and passed on in the same order.
+     *
+     * @return false if the buffer has already been released, because the response was cancelled
+     */
+    private synchronized boolean handOver(ByteBuf chunk) {
+        if (completed.peekFirst() != chunk) {
+            return false;
+        }
+        completed.pollFirst();
+        return true;
+    }
+
+    /**
+     * Release the buffers that have not been passed on, if the response is cancelled or fails.
+     */
+    private synchronized void release() {
+        released = true;
+        completed.forEach(ByteBuf::release);
+        completed.clear();
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+}
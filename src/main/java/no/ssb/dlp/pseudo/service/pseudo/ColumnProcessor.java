@@ -0,0 +1,58 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import lombok.Getter;
+import no.ssb.dlp.pseudo.service.pseudo.metadata.PseudoMetadataProcessor;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Transforms the values of a single field (a column of values).
+ *
+ * <p>Unlike the {@link no.ssb.dlp.pseudo.core.map.RecordMapProcessor}, which resolves the pseudo function for every
+ * value of every record, the pseudo functions of a column are resolved once when the processor is created (see
+ * {@link RecordMapProcessorFactory}). Each value is then passed through the transformation stages directly.</p>
+ */
+public class ColumnProcessor {
+
+    private final List<UnaryOperator<String>> preprocessors;
+    private final List<UnaryOperator<String>> transformers;
+    @Getter
+    private final PseudoMetadataProcessor metadataProcessor;
+
+    ColumnProcessor(List<UnaryOperator<String>> preprocessors,
+                    List<UnaryOperator<String>> transformers,
+                    PseudoMetadataProcessor metadataProcessor) {
+        this.preprocessors = List.copyOf(preprocessors);
+        this.transformers = List.copyOf(transformers);
+        this.metadataProcessor = metadataProcessor;
+    }
+
+    public boolean hasPreprocessors() {
+        return !preprocessors.isEmpty();
+    }
+
+    /**
+     * Initialize the pseudo functions of the column with a value, e.g. in order to collect values for a bulk lookup.
+     *
+     * @param value the value to initialize with
+     */
+    public void init(String value) {
+        for (UnaryOperator<String> preprocessor : preprocessors) {
+            value = preprocessor.apply(value);
+        }
+    }
+
+    /**
+     * Transform a single value of the column.
+     *
+     * @param value the value to transform
+     * @return the transformed value
+     */
+    public String process(String value) {
+        for (UnaryOperator<String> transformer : transformers) {
+            value = transformer.apply(value);
+        }
+        return value;
+    }
+}
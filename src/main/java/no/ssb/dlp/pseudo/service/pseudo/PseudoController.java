@@ -1,6 +1,7 @@
 package no.ssb.dlp.pseudo.service.pseudo;
 
 import com.google.common.base.Strings;
+import io.micronaut.core.annotation.Nullable;
 import io.micronaut.http.*;
 import io.micronaut.http.annotation.Error;
 import io.micronaut.http.annotation.*;
@@ -9,7 +10,10 @@ import io.micronaut.http.hateoas.Link;
 import io.micronaut.scheduling.TaskExecutors;
 import io.micronaut.scheduling.annotation.ExecuteOn;
 import io.micronaut.security.annotation.Secured;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.reactivex.Flowable;
+import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.trace.Span;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -26,10 +30,13 @@ import no.ssb.dlp.pseudo.service.security.PseudoServiceRole;
 import no.ssb.dlp.pseudo.service.sid.InvalidSidSnapshotDateException;
 import no.ssb.dlp.pseudo.service.sid.SidIndexUnavailableException;
 
+import no.ssb.dlp.pseudo.service.tracing.BatchTracer;
 import no.ssb.dlp.pseudo.service.tracing.WithSpan;
 import no.ssb.dlp.pseudo.service.tracing.WithSpanContext;
 import org.slf4j.MDC;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
@@ -52,69 +59,90 @@ public class PseudoController {
     private final StreamProcessorFactory streamProcessorFactory;
     private final RecordMapProcessorFactory recordProcessorFactory;
     private final PseudoConfigSplitter pseudoConfigSplitter;
+    private final PseudoFieldConfig pseudoFieldConfig;
+    private final OpenTelemetry openTelemetry;
 
     /**
      * Pseudonymizes a field.
      *
+     * <p>If streaming is enabled (see {@link PseudoFieldConfig}), the values are read from the request body and
+     * pseudonymized incrementally, so that large requests do not need to be held in memory in their entirety.</p>
+     *
      * @param request JSON string representing a {@link PseudoFieldRequest} object.
+     * @param accept  the requested response format, either application/json (default) or application/x-ndjson
      * @return HTTP response containing a {@link HttpResponse<Flowable>} object.
      */
 
     @WithSpan
     @Operation(summary = "Pseudonymize field", description = "Pseudonymize a field.")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, PseudoResponseSerializer.APPLICATION_NDJSON})
     @Post(value = "/pseudonymize/field", consumes = MediaType.APPLICATION_JSON)
     @ExecuteOn(TaskExecutors.BLOCKING)
-    public HttpResponse<Flowable<byte[]>> pseudonymizeField(@Schema(implementation = PseudoFieldRequest.class) String request) {
-        PseudoFieldRequest req = Json.toObject(PseudoFieldRequest.class, request);
+    public HttpResponse<Flowable<ByteBuf>> pseudonymizeField(@Schema(implementation = PseudoFieldRequest.class) @Body InputStream request,
+                                                             @Nullable @Header(HttpHeaders.ACCEPT) String accept) {
+        final PseudoFieldRequestReader reader = readPseudoFieldRequest(request);
+        final PseudoFieldRequest req = reader.getRequest();
         final var currentSpan = WithSpanContext.currentSpan();
-        if (req != null) {
-            currentSpan.setAttribute("pseudoRequest.field", req.getName());
-            currentSpan.setAttribute("pseudoRequest.pattern", req.getPattern());
-            currentSpan.setAttribute("pseudoRequest.pseudoFunc", req.getPseudoFunc());
-            final var values = req.getValues();
-            if (values != null) {
-                currentSpan.setAttribute("pseudoRequest.values.count", values.size());
-                currentSpan.setAttribute("pseudoRequest.values", values.toString());
-                Span.current().setAttribute("pseudoRequest.values", values.toString());
-            }
+        currentSpan.setAttribute("pseudoRequest.field", req.getName());
+        currentSpan.setAttribute("pseudoRequest.pattern", req.getPattern());
+        currentSpan.setAttribute("pseudoRequest.pseudoFunc", req.getPseudoFunc());
+        currentSpan.setAttribute("pseudoRequest.streaming", reader.isStreaming());
+        final var values = req.getValues();
+        if (values != null) {
+            currentSpan.setAttribute("pseudoRequest.values.count", values.size());
+            currentSpan.setAttribute("pseudoRequest.values", values.toString());
+            Span.current().setAttribute("pseudoRequest.values", values.toString());
         }
         log.info(Strings.padEnd(String.format("*** Pseudonymize field: %s ", req.getName()), 80, '*'));
-        PseudoField pseudoField = new PseudoField(req.getName(), req.getPattern(), req.getPseudoFunc(), req.getKeyset());
+        final ResponseFormat responseFormat = ResponseFormat.fromAccept(accept);
+        PseudoField pseudoField = newPseudoField(req.getName(), req.getPattern(), req.getPseudoFunc(), req.getKeyset());
+        pseudoField.setResponseFormat(responseFormat);
         try {
             final String correlationId = MDC.get("CorrelationID");
 
             currentSpan.addEvent("process_pseudo_field", Instant.now());
-            final var result = pseudoField.process(
-                    pseudoConfigSplitter,
-                    recordProcessorFactory,
-                    req.values,
-                    PseudoOperation.PSEUDONYMIZE,
-                    correlationId
-            ).map(o -> o.getBytes(StandardCharsets.UTF_8));
+            final Flowable<String> processed = reader.isStreaming()
+                    ? pseudoField.process(pseudoConfigSplitter, recordProcessorFactory, reader.valueWindows(),
+                    PseudoOperation.PSEUDONYMIZE, correlationId)
+                    : pseudoField.process(pseudoConfigSplitter, recordProcessorFactory, values,
+                    PseudoOperation.PSEUDONYMIZE, correlationId);
+            final var result = toChunks(processed);
             currentSpan.addEvent("finished_process_pseudo_field", Instant.now());
 
             return HttpResponse.ok(
               result
-            ).characterEncoding(StandardCharsets.UTF_8);
+            ).contentType(responseFormat.getMediaType()).characterEncoding(StandardCharsets.UTF_8);
         } catch (Exception e) {
             return HttpResponse.serverError(Flowable.error(e));
         }
     }
 
+    private PseudoFieldRequestReader readPseudoFieldRequest(InputStream request) {
+        final int windowSize = pseudoFieldConfig.isStreamingEnabled()
+                ? pseudoFieldConfig.getStreamingWindowSize()
+                : Integer.MAX_VALUE;
+        try {
+            return PseudoFieldRequestReader.read(request, windowSize);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read request: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Depseudonymizes a field.
      *
      * @param request JSON string representing a {@link DepseudoFieldRequest} object.
+     * @param accept  the requested response format, either application/json (default) or application/x-ndjson
      * @return HTTP response containing a {@link HttpResponse<Flowable>} object.
      */
     @WithSpan
     @Operation(summary = "Depseudonymize field", description = "Depseudonymize a field.")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, PseudoResponseSerializer.APPLICATION_NDJSON})
     @Secured({PseudoServiceRole.ADMIN})
     @Post(value = "/depseudonymize/field", consumes = MediaType.APPLICATION_JSON)
     @ExecuteOn(TaskExecutors.BLOCKING)
-    public HttpResponse<Flowable<byte[]>> depseudonymizeField(@Schema(implementation = DepseudoFieldRequest.class) String request) {
+    public HttpResponse<Flowable<ByteBuf>> depseudonymizeField(@Schema(implementation = DepseudoFieldRequest.class) String request,
+                                                               @Nullable @Header(HttpHeaders.ACCEPT) String accept) {
         DepseudoFieldRequest req = Json.toObject(DepseudoFieldRequest.class, request);
         Span currentSpan = Span.current();
         if (currentSpan.getSpanContext().isValid() && req != null) {
@@ -123,12 +151,14 @@ public class PseudoController {
             currentSpan.setAttribute("pseudo.values.count", req.getValues() == null ? 0 : req.getValues().size());
         }
         log.info(Strings.padEnd(String.format("*** Depseudonymize field: %s ", req.getName()), 80, '*'));
-        PseudoField pseudoField = new PseudoField(req.getName(), req.getPattern(), req.getPseudoFunc(), req.getKeyset());
+        final ResponseFormat responseFormat = ResponseFormat.fromAccept(accept);
+        PseudoField pseudoField = newPseudoField(req.getName(), req.getPattern(), req.getPseudoFunc(), req.getKeyset());
+        pseudoField.setResponseFormat(responseFormat);
         try {
 
             final String correlationId = MDC.get("CorrelationID");
 
-            return HttpResponse.ok(pseudoField.process(pseudoConfigSplitter, recordProcessorFactory, req.values, PseudoOperation.DEPSEUDONYMIZE, correlationId).map(o -> o.getBytes(StandardCharsets.UTF_8))).characterEncoding(StandardCharsets.UTF_8);
+            return HttpResponse.ok(toChunks(pseudoField.process(pseudoConfigSplitter, recordProcessorFactory, req.values, PseudoOperation.DEPSEUDONYMIZE, correlationId))).contentType(responseFormat.getMediaType()).characterEncoding(StandardCharsets.UTF_8);
         } catch (Exception e) {
             return HttpResponse.serverError(Flowable.error(e));
         }
@@ -138,15 +168,17 @@ public class PseudoController {
      * Repseudonymizes a field.
      *
      * @param request JSON string representing a {@link RepseudoFieldRequest} object.
+     * @param accept  the requested response format, either application/json (default) or application/x-ndjson
      * @return HTTP response containing a {@link HttpResponse<Flowable>} object.
      */
     @WithSpan
     @Operation(summary = "Repseudonymize field", description = "Repseudonymize a field.")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, PseudoResponseSerializer.APPLICATION_NDJSON})
     @Secured({PseudoServiceRole.ADMIN})
     @Post(value = "/repseudonymize/field", consumes = MediaType.APPLICATION_JSON)
     @ExecuteOn(TaskExecutors.BLOCKING)
-    public HttpResponse<Flowable<byte[]>> repseudonymizeField(@Schema(implementation = RepseudoFieldRequest.class) String request) {
+    public HttpResponse<Flowable<ByteBuf>> repseudonymizeField(@Schema(implementation = RepseudoFieldRequest.class) String request,
+                                                               @Nullable @Header(HttpHeaders.ACCEPT) String accept) {
         RepseudoFieldRequest req = Json.toObject(RepseudoFieldRequest.class, request);
         Span currentSpan = Span.current();
         if (currentSpan.getSpanContext().isValid() && req != null) {
@@ -155,17 +187,32 @@ public class PseudoController {
             currentSpan.setAttribute("pseudo.values.count", req.getValues() == null ? 0 : req.getValues().size());
         }
         log.info(Strings.padEnd(String.format("*** Repseudonymize field: %s ", req.getName()), 80, '*'));
-        PseudoField sourcePseudoField = new PseudoField(req.getName(), req.getPattern(), req.getSourcePseudoFunc(), req.getSourceKeyset());
-        PseudoField targetPseudoField = new PseudoField(req.getName(), req.getPattern(), req.getTargetPseudoFunc(), req.getTargetKeyset());
+        final ResponseFormat responseFormat = ResponseFormat.fromAccept(accept);
+        PseudoField sourcePseudoField = newPseudoField(req.getName(), req.getPattern(), req.getSourcePseudoFunc(), req.getSourceKeyset());
+        sourcePseudoField.setResponseFormat(responseFormat);
+        PseudoField targetPseudoField = newPseudoField(req.getName(), req.getPattern(), req.getTargetPseudoFunc(), req.getTargetKeyset());
         try {
 
             final String correlationId = MDC.get("CorrelationID");
-            return HttpResponse.ok(sourcePseudoField.process(recordProcessorFactory, req.values, targetPseudoField, correlationId).map(o -> o.getBytes(StandardCharsets.UTF_8))).characterEncoding(StandardCharsets.UTF_8);
+            return HttpResponse.ok(toChunks(sourcePseudoField.process(recordProcessorFactory, req.values, targetPseudoField, correlationId))).contentType(responseFormat.getMediaType()).characterEncoding(StandardCharsets.UTF_8);
         } catch (Exception e) {
             return HttpResponse.serverError(Flowable.error(e));
         }
     }
 
+    private Flowable<ByteBuf> toChunks(Flowable<String> response) {
+        return ChunkedResponseWriter.write(response, ByteBufAllocator.DEFAULT, pseudoFieldConfig.getResponseChunkSize());
+    }
+
+    private PseudoField newPseudoField(String name, String pattern, String pseudoFunc, EncryptedKeysetWrapper keyset) {
+        PseudoField pseudoField = new PseudoField(name, pattern, pseudoFunc, keyset);
+        pseudoField.setParallelism(pseudoFieldConfig.getParallelism());
+        pseudoField.setChunkSize(pseudoFieldConfig.getChunkSize());
+        pseudoField.setTracingGranularity(pseudoFieldConfig.getTracingGranularity());
+        pseudoField.setTracer(openTelemetry.getTracer(BatchTracer.INSTRUMENTATION_NAME));
+        return pseudoField;
+    }
+
     @Data
     public static class PseudoFieldRequest {
 
@@ -2,12 +2,14 @@ package no.ssb.dlp.pseudo.service.pseudo;
 
 import com.google.common.base.Stopwatch;
 import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Scope;
 import io.opentelemetry.instrumentation.annotations.AddingSpanAttributes;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import io.reactivex.Completable;
 import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
@@ -15,18 +17,21 @@ import lombok.extern.slf4j.Slf4j;
 import no.ssb.dlp.pseudo.core.PseudoOperation;
 import no.ssb.dlp.pseudo.core.field.FieldDescriptor;
 import no.ssb.dlp.pseudo.core.func.PseudoFuncRule;
-import no.ssb.dlp.pseudo.core.map.RecordMapProcessor;
 import no.ssb.dlp.pseudo.core.tink.model.EncryptedKeysetWrapper;
 import no.ssb.dlp.pseudo.core.util.Json;
 import no.ssb.dlp.pseudo.service.pseudo.metadata.FieldMetric;
 import no.ssb.dlp.pseudo.service.pseudo.metadata.PseudoMetadataProcessor;
+import no.ssb.dlp.pseudo.service.tracing.BatchTracer;
+import no.ssb.dlp.pseudo.service.tracing.TracingGranularity;
 import no.ssb.dlp.pseudo.service.tracing.WithSpan;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 
+import static no.ssb.dlp.pseudo.core.func.PseudoFuncNames.MAP_SID;
+
 /**
  * Represents a field to be pseudonymized.
  */
@@ -37,10 +42,35 @@ public class PseudoField {
     private static final int BUFFER_SIZE = 10000;
     @Getter(AccessLevel.PROTECTED)
     private static final String DEFAULT_PSEUDO_FUNC = "daead(keyId=ssb-common-key-1)";
+    private static final String BATCH_SPAN_NAME = "PseudoField.processBatch";
+    private static final String VALUE_SPAN_NAME = "PseudoField.processValue";
 
     protected String name;
     protected PseudoConfig pseudoConfig;
 
+    /**
+     * The number of chunks of values that may be transformed concurrently. A value of 1 (the default) processes all
+     * values sequentially.
+     */
+    protected int parallelism = 1;
+
+    /**
+     * The number of values in each chunk. Chunks are the unit of parallel processing and of batch tracing.
+     */
+    protected int chunkSize = BUFFER_SIZE;
+
+    /**
+     * How fine-grained the tracing of the value transformations should be.
+     */
+    protected TracingGranularity tracingGranularity = TracingGranularity.BATCH;
+
+    protected Tracer tracer = OpenTelemetry.noop().getTracer(BatchTracer.INSTRUMENTATION_NAME);
+
+    /**
+     * The format of the response. With {@link ResponseFormat#NDJSON}, each chunk of values is written as a record.
+     */
+    protected ResponseFormat responseFormat = ResponseFormat.JSON;
+
     /**
      * Constructs a {@code PseudoField} object with the specified name, keyset, pseudoConfig. If no keyset is supplied
      * a default pseudo configuration is used.
@@ -78,8 +108,22 @@ public class PseudoField {
         pseudoConfig.getRules().add(new PseudoFuncRule(name, pattern, pseudoFunc));
     }
 
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, but was " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be a positive number, but was " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
     /**
-     * Creates a Flowable that processes each value of the field, by applying the configured pseudo rules using a recordMapProcessor.
+     * Creates a Flowable that processes each value of the field, by applying the configured pseudo rules using a columnProcessor.
      * This variant of the process() method is intended for "pseudonymize" and "depseudonymize" operations.
      *
      * @param pseudoConfigSplitter   The PseudoConfigSplitter instance to use for splitting pseudo configurations.
@@ -94,43 +138,57 @@ public class PseudoField {
                                     PseudoOperation pseudoOperation,
                                     String correlationId) {
         Stopwatch stopwatch = Stopwatch.createStarted();
-        List<PseudoConfig> pseudoConfigs = pseudoConfigSplitter.splitIfNecessary(this.getPseudoConfig());
+        ColumnProcessor columnProcessor = newColumnProcessor(pseudoConfigSplitter,
+                recordProcessorFactory, pseudoOperation, correlationId);
+        Completable preprocessor = getPreprocessor(values, columnProcessor);
+        final PseudoMetadataProcessor metadataProcessor = columnProcessor.getMetadataProcessor();
+        final BatchTracer batchTracer = BatchTracer.of(tracer, tracingGranularity);
 
-        RecordMapProcessor<PseudoMetadataProcessor> recordMapProcessor;
-        switch (pseudoOperation) {
-            case PSEUDONYMIZE -> recordMapProcessor = recordProcessorFactory.
-                    newPseudonymizeRecordProcessor(pseudoConfigs, correlationId);
-            case DEPSEUDONYMIZE -> recordMapProcessor = recordProcessorFactory.
-                    newDepseudonymizeRecordProcessor(pseudoConfigs, correlationId);
-            default -> throw new RuntimeException(
-                    String.format("Pseudo operation \"%s\" not supported for this method", pseudoOperation));
-        }
-        Completable preprocessor = getPreprocessor(values, recordMapProcessor);
-        // Metadata will be processes in parallel with the data, but must be collected separately
-        final PseudoMetadataProcessor metadataProcessor = recordMapProcessor.getMetadataProcessor();
-        final Flowable<String> metadata = Flowable.fromPublisher(metadataProcessor.getMetadata());
-        final Flowable<String> logs = Flowable.fromPublisher(metadataProcessor.getLogs());
-        final Flowable<String> metrics = Flowable.fromPublisher(metadataProcessor.getMetrics());
+        Flowable<Optional<String>> result = preprocessor.andThen(
+                mapValues(values, columnProcessor, metadataProcessor, batchTracer));
+        return serialize(result, metadataProcessor, pseudoOperation, stopwatch);
+    }
 
-        Flowable<String> result = preprocessor.andThen(Flowable.fromIterable(values.stream()
-                        .map(v -> mapOptional(v, recordMapProcessor, metadataProcessor)).toList()
-                ))
-                .map(v -> v.map(Json::from).orElse("null"))
-                .doOnError(throwable -> {
-                    log.error("Response failed", throwable);
-                    recordMapProcessor.getMetadataProcessor().onErrorAll(throwable);
-                })
-                .doOnComplete(() -> {
-                    log.info("{} took {}", pseudoOperation, stopwatch.stop().elapsed());
-                    // Signal the metadataProcessor to stop collecting metadata
-                    recordMapProcessor.getMetadataProcessor().onCompleteAll();
-                });
+    /**
+     * Creates a Flowable that processes the values of the field window by window, as they are read from the request.
+     * This variant of the process() method is intended for "pseudonymize" and "depseudonymize" operations on
+     * requests that are too big to be held in memory in their entirety.
+     *
+     * <p>SID mapping requires all values to be known up front (in order to look them up in bulk), so if the field
+     * is configured with a map-sid function, the windows are collected before processing.</p>
+     *
+     * @param pseudoConfigSplitter   The PseudoConfigSplitter instance to use for splitting pseudo configurations.
+     * @param recordProcessorFactory The RecordMapProcessorFactory instance to use for creating a new PseudonymizeRecordProcessor.
+     * @param valueWindows           Consecutive windows of the values to be processed.
+     * @return A Flowable stream that processes the field values by applying the configured pseudo rules, and returns them as a lists of strings.
+     */
+    @WithSpan
+    public Flowable<String> process(PseudoConfigSplitter pseudoConfigSplitter,
+                                    RecordMapProcessorFactory recordProcessorFactory,
+                                    Flowable<List<String>> valueWindows,
+                                    PseudoOperation pseudoOperation,
+                                    String correlationId) {
+        if (isSidMapping()) {
+            return valueWindows
+                    .collect(ArrayList<String>::new, List::addAll)
+                    .flatMapPublisher(values -> process(pseudoConfigSplitter, recordProcessorFactory, values,
+                            pseudoOperation, correlationId));
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        ColumnProcessor columnProcessor = newColumnProcessor(pseudoConfigSplitter,
+                recordProcessorFactory, pseudoOperation, correlationId);
+        final PseudoMetadataProcessor metadataProcessor = columnProcessor.getMetadataProcessor();
+        final BatchTracer batchTracer = BatchTracer.of(tracer, tracingGranularity);
 
-        return PseudoResponseSerializer.serialize(result, metadata, logs, metrics);
+        Flowable<Optional<String>> result = parallelism > 1
+                ? mapChunksInParallel(valueWindows, true, columnProcessor, metadataProcessor, batchTracer)
+                : valueWindows.concatMapIterable(window ->
+                mapChunk(window, true, columnProcessor, metadataProcessor, batchTracer));
+        return serialize(result, metadataProcessor, pseudoOperation, stopwatch);
     }
 
     /**
-     * Creates a Flowable that processes each value of the field, by applying the configured pseudo rules using a recordMapProcessor.
+     * Creates a Flowable that processes each value of the field, by applying the configured pseudo rules using a columnProcessor.
      * This variant of the process() method is intended for the "repseudonymize" operation.
      *
      * @param recordProcessorFactory The RecordMapProcessorFactory instance to use for creating a new PseudonymizeRecordProcessor.
@@ -144,48 +202,146 @@ public class PseudoField {
                                     String correlationId) {
         Stopwatch stopwatch = Stopwatch.createStarted();
         PseudoConfig targetPseudoConfig = targetPseudoField.getPseudoConfig();
-        RecordMapProcessor<PseudoMetadataProcessor> recordMapProcessor = recordProcessorFactory.
-                newRepseudonymizeRecordProcessor(this.getPseudoConfig(), targetPseudoConfig, correlationId);
-        Completable preprocessor = getPreprocessor(values, recordMapProcessor);
+        ColumnProcessor columnProcessor = recordProcessorFactory.newRepseudonymizeColumnProcessor(
+                this.getPseudoConfig(), targetPseudoConfig, this.getName(), correlationId);
+        Completable preprocessor = getPreprocessor(values, columnProcessor);
+        final PseudoMetadataProcessor metadataProcessor = columnProcessor.getMetadataProcessor();
+        final BatchTracer batchTracer = BatchTracer.of(tracer, tracingGranularity);
+
+        Flowable<Optional<String>> result = preprocessor.andThen(
+                mapValues(values, columnProcessor, metadataProcessor, batchTracer));
+        return serialize(result, metadataProcessor, PseudoOperation.REPSEUDONYMIZE, stopwatch);
+    }
+
+    private ColumnProcessor newColumnProcessor(PseudoConfigSplitter pseudoConfigSplitter,
+                                               RecordMapProcessorFactory recordProcessorFactory,
+                                               PseudoOperation pseudoOperation,
+                                               String correlationId) {
+        List<PseudoConfig> pseudoConfigs = pseudoConfigSplitter.splitIfNecessary(this.getPseudoConfig());
+        return switch (pseudoOperation) {
+            case PSEUDONYMIZE -> recordProcessorFactory.newPseudonymizeColumnProcessor(pseudoConfigs,
+                    this.getName(), correlationId);
+            case DEPSEUDONYMIZE -> recordProcessorFactory.newDepseudonymizeColumnProcessor(pseudoConfigs,
+                    this.getName(), correlationId);
+            default -> throw new RuntimeException(
+                    String.format("Pseudo operation \"%s\" not supported for this method", pseudoOperation));
+        };
+    }
+
+    private Flowable<String> serialize(Flowable<Optional<String>> values,
+                                       PseudoMetadataProcessor metadataProcessor,
+                                       PseudoOperation pseudoOperation,
+                                       Stopwatch stopwatch) {
         // Metadata will be processes in parallel with the data, but must be collected separately
-        final PseudoMetadataProcessor metadataProcessor = recordMapProcessor.getMetadataProcessor();
         final Flowable<String> metadata = Flowable.fromPublisher(metadataProcessor.getMetadata());
         final Flowable<String> logs = Flowable.fromPublisher(metadataProcessor.getLogs());
         final Flowable<String> metrics = Flowable.fromPublisher(metadataProcessor.getMetrics());
 
-        Flowable<String> result = preprocessor.andThen(Flowable.fromIterable(values.stream()
-                        .map(v -> mapOptional(v, recordMapProcessor, metadataProcessor)).toList()
-                ))
+        // Values are transformed on demand as the response is written, so keep the work off the request thread
+        Flowable<String> result = values
+                .subscribeOn(Schedulers.io())
                 .map(v -> v.map(Json::from).orElse("null"))
                 .doOnError(throwable -> {
                     log.error("Response failed", throwable);
                     metadataProcessor.onErrorAll(throwable);
                 })
                 .doOnComplete(() -> {
-                    log.info("{} took {}", PseudoOperation.REPSEUDONYMIZE, stopwatch.stop().elapsed());
+                    log.info("{} took {}", pseudoOperation, stopwatch.stop().elapsed());
                     // Signal the metadataProcessor to stop collecting metadata
                     metadataProcessor.onCompleteAll();
                 });
-        return PseudoResponseSerializer.serialize(result, metadata, logs, metrics);
+        return responseFormat == ResponseFormat.NDJSON
+                ? PseudoResponseSerializer.serializeNdjson(result, metadata, logs, metrics, chunkSize)
+                : PseudoResponseSerializer.serialize(result, metadata, logs, metrics);
+    }
+
+    private boolean isSidMapping() {
+        return pseudoConfig.getRules().stream().anyMatch(rule -> rule.getFunc().startsWith(MAP_SID));
     }
 
-    private Optional<Object> mapOptional(String v, RecordMapProcessor<PseudoMetadataProcessor> recordMapProcessor,
-                                         PseudoMetadataProcessor metadataProcessor) {
+    private Optional<String> mapOptional(String v, ColumnProcessor columnProcessor,
+                                         PseudoMetadataProcessor metadataProcessor, BatchTracer batchTracer) {
         if (v == null) {
             metadataProcessor.addMetric(FieldMetric.NULL_VALUE);
             return Optional.empty();
         } else {
-            return Optional.ofNullable(recordMapProcessor.process(Map.of(this.getName(), v)).get(this.getName()));
+            return Optional.ofNullable(batchTracer.traceValue(VALUE_SPAN_NAME, () -> columnProcessor.process(v)));
+        }
+    }
+
+    /**
+     * Lazily map the values chunk by chunk as they are requested downstream. The values are sliced rather than
+     * emitted one by one, since the values may contain nulls (which are not allowed as Flowable items).
+     */
+    private Flowable<Optional<String>> mapValues(List<String> values,
+                                                 ColumnProcessor columnProcessor,
+                                                 PseudoMetadataProcessor metadataProcessor,
+                                                 BatchTracer batchTracer) {
+        final Flowable<List<String>> chunks = Flowable.range(0, (values.size() + chunkSize - 1) / chunkSize)
+                .map(i -> values.subList(i * chunkSize, Math.min((i + 1) * chunkSize, values.size())));
+        if (parallelism > 1 && values.size() > chunkSize) {
+            return mapChunksInParallel(chunks, false, columnProcessor, metadataProcessor, batchTracer);
+        }
+        return chunks.concatMapIterable(chunk ->
+                mapChunk(chunk, false, columnProcessor, metadataProcessor, batchTracer));
+    }
+
+    /**
+     * Map up to {@link #parallelism} chunks concurrently on the IO scheduler, since pseudo functions may block on
+     * remote calls (e.g. SID mapping or KMS). Chunks are emitted in the same order as they were received, so the order
+     * of the values is preserved.
+     */
+    private Flowable<Optional<String>> mapChunksInParallel(Flowable<List<String>> chunks, boolean initChunks,
+                                                           ColumnProcessor columnProcessor,
+                                                           PseudoMetadataProcessor metadataProcessor,
+                                                           BatchTracer batchTracer) {
+        return chunks
+                .concatMapEager(chunk -> Flowable.fromCallable(() ->
+                                        mapChunk(chunk, initChunks, columnProcessor, metadataProcessor, batchTracer))
+                                .subscribeOn(Schedulers.io()),
+                        parallelism, 1)
+                .concatMapIterable(mapped -> mapped);
+    }
+
+    private List<Optional<String>> mapChunk(List<String> chunk, boolean initChunk,
+                                            ColumnProcessor columnProcessor,
+                                            PseudoMetadataProcessor metadataProcessor,
+                                            BatchTracer batchTracer) {
+        // Values that could not be transformed are counted as metrics, so count the metrics of this chunk
+        final long[] metrics = new long[FieldMetric.values().length];
+        return batchTracer.traceBatch(BATCH_SPAN_NAME, chunk.size(),
+                () -> metadataProcessor.countBatchMetrics(metrics, () ->
+                        transformChunk(chunk, initChunk, columnProcessor, metadataProcessor, batchTracer)),
+                () -> Map.of(
+                        "missing_sid", metrics[FieldMetric.MISSING_SID.ordinal()],
+                        "fpe_limitation", metrics[FieldMetric.FPE_LIMITATION.ordinal()]));
+    }
+
+    private List<Optional<String>> transformChunk(List<String> chunk, boolean initChunk,
+                                                  ColumnProcessor columnProcessor,
+                                                  PseudoMetadataProcessor metadataProcessor,
+                                                  BatchTracer batchTracer) {
+        if (initChunk && columnProcessor.hasPreprocessors()) {
+            initNonNull(chunk, columnProcessor);
+        }
+        final List<Optional<String>> mapped = new ArrayList<>(chunk.size());
+        for (String v : chunk) {
+            mapped.add(mapOptional(v, columnProcessor, metadataProcessor, batchTracer));
+        }
+        return mapped;
+    }
+
+    private static void initNonNull(List<String> values, ColumnProcessor columnProcessor) {
+        for (String v : values) {
+            if (v != null) {
+                columnProcessor.init(v);
+            }
         }
     }
 
-    protected Completable getPreprocessor(List<String> values, RecordMapProcessor<PseudoMetadataProcessor> recordMapProcessor) {
-        if (recordMapProcessor.hasPreprocessors()) {
-            return Completable.fromPublisher(Flowable.fromIterable(values.stream()
-                    .filter(Objects::nonNull)
-                    .map(v -> recordMapProcessor.init(Map.of(this.getName(), v)))
-                    .toList())
-            );
+    protected Completable getPreprocessor(List<String> values, ColumnProcessor columnProcessor) {
+        if (columnProcessor.hasPreprocessors()) {
+            return Completable.fromAction(() -> initNonNull(values, columnProcessor));
         } else {
             return Completable.complete();
         }
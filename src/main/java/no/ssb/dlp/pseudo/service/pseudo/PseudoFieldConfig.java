@@ -0,0 +1,55 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import no.ssb.dlp.pseudo.service.tracing.TracingGranularity;
+
+@Data
+@ConfigurationProperties(PseudoFieldConfig.PREFIX)
+public class PseudoFieldConfig {
+
+    public static final String PREFIX = "pseudo.field";
+
+    /**
+     * If enabled, the values of a field request are read from the request body and pseudonymized incrementally,
+     * instead of parsing the whole request up front. Requests that do not fit within a single window are only streamed
+     * if <code>name</code>, <code>pattern</code>, <code>pseudoFunc</code> and <code>keyset</code> are declared before
+     * the <code>values</code> property.
+     */
+    private boolean streamingEnabled = false;
+
+    /**
+     * The maximum number of field values that are read from the request body at a time when streaming is enabled.
+     */
+    @Min(1)
+    private int streamingWindowSize = 10000;
+
+    /**
+     * The number of chunks of field values that may be pseudonymized concurrently within a single request. A value of
+     * 1 processes all values of a request sequentially.
+     */
+    @Min(1)
+    private int parallelism = 1;
+
+    /**
+     * The number of field values in each chunk. Chunks are the unit of parallel processing and of batch tracing. When
+     * streaming, each window of values is processed as one chunk.
+     */
+    @Min(1)
+    private int chunkSize = 10000;
+
+    /**
+     * How fine-grained the tracing of value transformations should be. With {@link TracingGranularity#BATCH}, one
+     * span is created per chunk of values.
+     */
+    private TracingGranularity tracingGranularity = TracingGranularity.BATCH;
+
+    /**
+     * The preferred size in bytes of each chunk of the response body. The response is written in chunks of this size
+     * rather than one write per value.
+     */
+    @Min(1)
+    private int responseChunkSize = 64 * 1024;
+
+}
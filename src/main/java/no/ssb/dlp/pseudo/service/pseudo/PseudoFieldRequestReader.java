@@ -0,0 +1,219 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import no.ssb.dlp.pseudo.core.tink.model.EncryptedKeysetWrapper;
+import no.ssb.dlp.pseudo.core.util.Json;
+import no.ssb.dlp.pseudo.service.pseudo.PseudoController.PseudoFieldRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads a {@link PseudoFieldRequest} from a JSON request body using Jackson's streaming API.
+ *
+ * <p>The request properties are read up to and including the first window of <code>values</code>. If all values fit
+ * within that window, the rest of the request is read and the request is fully materialized. Otherwise, the request is
+ * <i>streaming</i> and the remaining values are pulled from the request body one window at a time as they are
+ * consumed via {@link #valueWindows()}. Memory usage is then bounded by the window size rather than by the size of the
+ * request.</p>
+ *
+ * <p>A request is only streamed if <code>name</code>, <code>pattern</code>, <code>pseudoFunc</code> and
+ * <code>keyset</code> (possibly as <code>null</code>) are all declared before <code>values</code>, since the values
+ * cannot be processed before the request properties are known. Otherwise, the remaining values are read into memory so
+ * that the properties that follow them are not missed.</p>
+ *
+ * <p>Both the <code>{"request": {...}}</code> envelope (either as a JSON object or as an escaped JSON string) and a
+ * bare request object are supported.</p>
+ */
+class PseudoFieldRequestReader implements Closeable {
+
+    private static final JsonFactory JSON_FACTORY = new MappingJsonFactory();
+    private static final String REQUEST_ENVELOPE = "request";
+    private static final String VALUES = "values";
+    private static final Set<String> STREAMING_PREREQUISITES = Set.of("name", "pattern", "pseudoFunc", "keyset");
+
+    private final int windowSize;
+    private final PseudoFieldRequest request = new PseudoFieldRequest();
+    private final Set<String> declaredProperties = new HashSet<>();
+    private JsonParser parser;
+    private List<String> pendingWindow;
+    private boolean valuesExhausted;
+    private boolean streaming;
+
+    private PseudoFieldRequestReader(JsonParser parser, int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be a positive number, but was " + windowSize);
+        }
+        this.parser = parser;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Read the request properties from a JSON request body.
+     *
+     * @param body       the request body
+     * @param windowSize the maximum number of values to hold in memory at a time
+     * @return a reader holding the request properties and (if not streaming) the values
+     */
+    static PseudoFieldRequestReader read(InputStream body, int windowSize) throws IOException {
+        PseudoFieldRequestReader reader = new PseudoFieldRequestReader(JSON_FACTORY.createParser(body), windowSize);
+        try {
+            reader.readRequest();
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        if (!reader.isStreaming()) {
+            reader.close();
+        }
+        return reader;
+    }
+
+    /**
+     * @return the request properties. The values are only populated if the request is not streaming.
+     */
+    PseudoFieldRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return true if the values did not fit within a single window, and must be consumed via {@link #valueWindows()}
+     */
+    boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Create a Flowable that reads the values from the request body, one window at a time. The request body is read
+     * on an IO thread, and only as fast as the windows are consumed.
+     *
+     * @return a Flowable of consecutive windows of values
+     */
+    Flowable<List<String>> valueWindows() {
+        if (!streaming) {
+            throw new IllegalStateException("The values of a non-streaming request are available from the request");
+        }
+        return Flowable.<List<String>>generate(emitter -> {
+                    final List<String> window = pendingWindow != null ? pendingWindow : readWindow();
+                    pendingWindow = null;
+                    if (!window.isEmpty()) {
+                        emitter.onNext(window);
+                    }
+                    if (valuesExhausted) {
+                        readTrailingProperties();
+                        emitter.onComplete();
+                    }
+                })
+                .doFinally(this::close)
+                .subscribeOn(Schedulers.io());
+    }
+
+    private void readRequest() throws IOException {
+        expectToken(JsonToken.START_OBJECT, parser.nextToken());
+        parser.nextToken();
+        if (parser.currentToken() == JsonToken.FIELD_NAME && REQUEST_ENVELOPE.equals(parser.currentName())) {
+            final JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_STRING) {
+                // The request has been submitted as an escaped JSON string
+                final JsonParser nestedParser = JSON_FACTORY.createParser(parser.getText());
+                parser.close();
+                parser = nestedParser;
+                expectToken(JsonToken.START_OBJECT, parser.nextToken());
+            } else {
+                expectToken(JsonToken.START_OBJECT, token);
+            }
+            parser.nextToken();
+        }
+        readProperties();
+    }
+
+    private void readProperties() throws IOException {
+        while (parser.currentToken() == JsonToken.FIELD_NAME) {
+            final String property = parser.currentName();
+            declaredProperties.add(property);
+            parser.nextToken();
+            switch (property) {
+                case "pseudoFunc" -> request.setPseudoFunc(parser.getValueAsString());
+                case "name" -> request.setName(parser.getValueAsString());
+                case "pattern" -> request.setPattern(parser.getValueAsString());
+                case "keyset" -> request.setKeyset(readKeyset());
+                case VALUES -> {
+                    if (parser.currentToken() != JsonToken.VALUE_NULL) {
+                        expectToken(JsonToken.START_ARRAY, parser.currentToken());
+                        final List<String> window = readWindow();
+                        if (!valuesExhausted && declaredProperties.containsAll(STREAMING_PREREQUISITES)) {
+                            // The rest of the values must be read incrementally
+                            pendingWindow = window;
+                            streaming = true;
+                            return;
+                        }
+                        // Properties may follow the values, so the request can not be processed until it is read
+                        while (!valuesExhausted) {
+                            window.addAll(readWindow());
+                        }
+                        request.setValues(window);
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+            parser.nextToken();
+        }
+    }
+
+    private EncryptedKeysetWrapper readKeyset() throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        final JsonNode keyset = parser.readValueAsTree();
+        return Json.toObject(EncryptedKeysetWrapper.class, keyset.toString());
+    }
+
+    private List<String> readWindow() throws IOException {
+        final List<String> window = new ArrayList<>();
+        while (window.size() < windowSize) {
+            final JsonToken token = parser.nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                valuesExhausted = true;
+                break;
+            } else if (token == JsonToken.VALUE_NULL) {
+                window.add(null);
+            } else if (token != null && token.isScalarValue()) {
+                window.add(parser.getValueAsString());
+            } else {
+                throw new IllegalArgumentException("Expected 'values' to be an array of strings, but found " + token);
+            }
+        }
+        return window;
+    }
+
+    private void readTrailingProperties() throws IOException {
+        // All request properties were declared before the values, so any trailing property can not change the request
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    private static void expectToken(JsonToken expected, JsonToken actual) {
+        if (actual != expected) {
+            throw new IllegalArgumentException(String.format("Invalid request. Expected %s but found %s",
+                    expected, actual));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
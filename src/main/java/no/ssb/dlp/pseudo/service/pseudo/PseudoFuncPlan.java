@@ -0,0 +1,135 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import no.ssb.dapla.dlp.pseudo.func.PseudoFunc;
+import no.ssb.dapla.dlp.pseudo.func.fpe.FpeFunc;
+import no.ssb.dapla.dlp.pseudo.func.map.MapFailureStrategy;
+import no.ssb.dapla.dlp.pseudo.func.map.MapFunc;
+import no.ssb.dapla.dlp.pseudo.func.map.MapFuncConfig;
+import no.ssb.dapla.dlp.pseudo.func.tink.fpe.TinkFpeFunc;
+import no.ssb.dlp.pseudo.core.field.FieldDescriptor;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncDeclaration;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncNames;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncRule;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncRuleMatch;
+import no.ssb.dlp.pseudo.service.pseudo.metadata.FieldMetadata;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static no.ssb.dlp.pseudo.core.func.PseudoFuncDeclaration.KEY_REFERENCE;
+
+/**
+ * Everything about a matched pseudo rule that does not depend on the value being transformed. The plan is computed
+ * once per rule, so that the per-value path does not need to parse the function declaration or inspect the function.
+ */
+@Getter
+class PseudoFuncPlan {
+
+    // Upper bound of distinct field paths to cache metadata for, e.g. for records with indexed array elements
+    private static final int MAX_CACHED_FIELD_PATHS = 1000;
+
+    private final PseudoFunc func;
+    private final PseudoFuncDeclaration declaration;
+    private final boolean sidMapping;
+    private final boolean mapFunc;
+    /**
+     * True if the function requires a minimum value length (i.e. FPE based functions).
+     */
+    private final boolean fpeLimited;
+    private final MapFailureStrategy mapFailureStrategy;
+    @Getter(AccessLevel.NONE)
+    private final FieldMetadata metadataTemplate;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, PathMetadata> fieldMetadata = new ConcurrentHashMap<>();
+
+    PseudoFuncPlan(PseudoFuncRule rule, PseudoFunc func) {
+        this.func = func;
+        this.declaration = PseudoFuncDeclaration.fromString(rule.getFunc());
+        final String funcName = declaration.getFuncName();
+        this.sidMapping = funcName.equals(PseudoFuncNames.MAP_SID)
+                || funcName.equals(PseudoFuncNames.MAP_SID_FF31)
+                || funcName.equals(PseudoFuncNames.MAP_SID_DAEAD);
+        this.mapFunc = func instanceof MapFunc;
+        // FPE requires minimum two bytes/chars to perform encryption and minimum four bytes in case of Unicode.
+        this.fpeLimited = func instanceof FpeFunc
+                || func instanceof TinkFpeFunc
+                || funcName.equals(PseudoFuncNames.MAP_SID)
+                || funcName.equals(PseudoFuncNames.MAP_SID_FF31);
+        this.mapFailureStrategy = Optional.ofNullable(
+                declaration.getArgs().getOrDefault(MapFuncConfig.Param.MAP_FAILURE_STRATEGY, null)
+        ).map(String::valueOf).map(MapFailureStrategy::valueOf).orElse(MapFailureStrategy.RETURN_ORIGINAL);
+        this.metadataTemplate = FieldMetadata.builder()
+                .encryptionKeyReference(declaration.getArgs().getOrDefault(KEY_REFERENCE, null))
+                .encryptionAlgorithm(func.getAlgorithm())
+                .stableIdentifierType(sidMapping)
+                .encryptionAlgorithmParameters(declaration.getArgs())
+                .build();
+    }
+
+    static PseudoFuncPlan of(PseudoFuncRuleMatch match) {
+        return new PseudoFuncPlan(match.getRule(), match.getFunc());
+    }
+
+    /**
+     * Get the metadata describing the transformation of a field.
+     *
+     * @param field                   the transformed field
+     * @param stableIdentifierVersion the SID snapshot that was used, if any
+     */
+    FieldMetadata metadataFor(FieldDescriptor field, String stableIdentifierVersion) {
+        PathMetadata pathMetadata = fieldMetadata.get(field.getPath());
+        if (pathMetadata == null) {
+            pathMetadata = new PathMetadata(metadataTemplate.toBuilder()
+                    .shortName(field.getName())
+                    .dataElementPath(normalizePath(field.getPath()))
+                    .build());
+            if (fieldMetadata.size() < MAX_CACHED_FIELD_PATHS) {
+                pathMetadata = Objects.requireNonNullElse(
+                        fieldMetadata.putIfAbsent(field.getPath(), pathMetadata), pathMetadata);
+            }
+        }
+        return pathMetadata.withVersion(stableIdentifierVersion);
+    }
+
+    private static String normalizePath(String path) {
+        // Normalize the path by skipping leading '/' and use dot as separator
+        return path.substring(1).replace('/', '.')
+                // Also replace the [] separator in nested structs
+                .replaceAll("\\[\\d*]", "");
+    }
+
+    /**
+     * The metadata of one field path. The same instances are returned for all values of the field, so that
+     * {@link no.ssb.dlp.pseudo.service.pseudo.metadata.PseudoMetadataProcessor} can recognize repeats by identity.
+     */
+    private static final class PathMetadata {
+        // There is usually only one SID snapshot per request, so this stays small
+        private static final int MAX_CACHED_VERSIONS = 16;
+
+        private final FieldMetadata metadata;
+        private final Map<String, FieldMetadata> versions = new ConcurrentHashMap<>();
+
+        private PathMetadata(FieldMetadata metadata) {
+            this.metadata = metadata;
+        }
+
+        private FieldMetadata withVersion(String stableIdentifierVersion) {
+            if (stableIdentifierVersion == null) {
+                return metadata;
+            }
+            FieldMetadata versioned = versions.get(stableIdentifierVersion);
+            if (versioned == null) {
+                versioned = metadata.toBuilder().stableIdentifierVersion(stableIdentifierVersion).build();
+                if (versions.size() < MAX_CACHED_VERSIONS) {
+                    versioned = Objects.requireNonNullElse(
+                            versions.putIfAbsent(stableIdentifierVersion, versioned), versioned);
+                }
+            }
+            return versioned;
+        }
+    }
+}
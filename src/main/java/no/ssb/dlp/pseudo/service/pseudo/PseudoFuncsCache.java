@@ -0,0 +1,91 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micronaut.runtime.event.annotation.EventListener;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import no.ssb.dlp.pseudo.core.PseudoKeyset;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncRule;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncs;
+import no.ssb.dlp.pseudo.core.util.Json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static no.ssb.dlp.pseudo.core.func.PseudoFuncNames.MAP_SID;
+
+/**
+ * Caches initialized {@link PseudoFuncs}, so that requests using the same rules and keysets do not need to resolve
+ * pseudo secrets, unwrap keysets and instantiate crypto primitives over again.
+ *
+ * <p>The cache key consists of the pattern and function declaration of each rule, along with a fingerprint of each
+ * keyset. The rule name is not part of the key, since it does not affect which function is applied to a field.</p>
+ *
+ * <p>SID mapping functions collect the identifiers of a single request, and can therefore not be shared.</p>
+ */
+@Singleton
+@Slf4j
+public class PseudoFuncsCache {
+
+    static final String CACHE_NAME = "pseudo_funcs";
+
+    private final boolean enabled;
+    private final Cache<String, PseudoFuncs> cache;
+
+    public PseudoFuncsCache(PseudoFuncsCacheConfig config, MeterRegistry meterRegistry) {
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Get the cached pseudo functions for the given rules and keysets, or create them if they are not cached.
+     *
+     * @param rules       the pseudo rules
+     * @param keysets     the keysets referenced by the rules
+     * @param pseudoFuncs creates the pseudo functions if they are not cached
+     * @return the pseudo functions
+     */
+    public PseudoFuncs get(Collection<PseudoFuncRule> rules, Collection<PseudoKeyset> keysets,
+                           Supplier<PseudoFuncs> pseudoFuncs) {
+        if (!enabled || rules.stream().anyMatch(rule -> rule.getFunc().startsWith(MAP_SID))) {
+            return pseudoFuncs.get();
+        }
+        return cache.get(cacheKey(rules, keysets), key -> pseudoFuncs.get());
+    }
+
+    /**
+     * Discard all cached pseudo functions, e.g. when the pseudo secrets have changed.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    void onPseudoSecretsRefreshed(PseudoSecrets.PseudoSecretsRefreshedEvent event) {
+        log.info("Pseudo secrets refreshed at {}, discarding cached pseudo functions", event.resolvedAt());
+        invalidateAll();
+    }
+
+    private static String cacheKey(Collection<PseudoFuncRule> rules, Collection<PseudoKeyset> keysets) {
+        return rules.stream()
+                .map(rule -> rule.getPattern() + "=" + rule.getFunc())
+                .collect(Collectors.joining(";")) + "|" + keysets.stream()
+                .map(PseudoFuncsCache::fingerprint)
+                .collect(Collectors.joining(";"));
+    }
+
+    private static String fingerprint(PseudoKeyset keyset) {
+        return Hashing.sha256().hashString(Json.from(keyset), StandardCharsets.UTF_8).toString();
+    }
+}
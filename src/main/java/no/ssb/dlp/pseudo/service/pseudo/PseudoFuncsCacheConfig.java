@@ -0,0 +1,30 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(PseudoFuncsCacheConfig.PREFIX)
+public class PseudoFuncsCacheConfig {
+
+    public static final String PREFIX = "pseudo.funcs-cache";
+
+    /**
+     * If enabled, initialized pseudo functions are reused across requests with the same rules and keysets.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The maximum number of distinct combinations of rules and keysets to keep pseudo functions for.
+     */
+    private long maximumSize = 500;
+
+    /**
+     * How long initialized pseudo functions may be reused. This also bounds how long a changed pseudo secret may go
+     * unnoticed.
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(15);
+
+}
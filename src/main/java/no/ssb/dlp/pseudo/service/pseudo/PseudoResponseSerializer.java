@@ -2,33 +2,77 @@ package no.ssb.dlp.pseudo.service.pseudo;
 
 import io.reactivex.Flowable;
 
+import java.util.List;
+
 public class PseudoResponseSerializer {
-    private static final long LOG_LIMIT = 100;
+
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     /**
      * Combine the <code>Flowable</code> JSON-objects (data, metadata, etc) into a single <code>Flowable</code> that
      * represents the JSON-structure.
      *
      * @param data      a flowable of String elements, each in JSON-format
      * @param metadata  a flowable of String elements, each in JSON-format
-     * @param logs      a flowable of String elements, each in JSON-format
+     * @param logs      a flowable of String elements, each in JSON-format (bounded by the metadata processor)
      * @param metrics   a flowable of String elements, each in JSON-format
      */
     public static Flowable<String> serialize(Flowable<String> data, Flowable<String> metadata,
                                              Flowable<String> logs, Flowable<String> metrics) {
-        return enclose(data.concatMap(item -> Flowable.just(item, ","))
-                .startWith("\"data\": [")
-                .skipLast(1) // Skip last comma
-                .concatWith(Flowable.just("], \"datadoc_metadata\": {\"variables\": ["))
-                .concatWith(metadata.concatMap(item -> Flowable.just(item, ",")).skipLast(1))
-                .concatWith(Flowable.just("]}, \"metrics\": ["))
-                .concatWith(metrics.concatMap(item -> Flowable.just(item, ",")).skipLast(1))
-                .concatWith(Flowable.just("], \"logs\": ["))
-                .concatWith(logs.take(LOG_LIMIT).concatMap(item -> Flowable.just(item, ",")).skipLast(1))
-                .concatWith(Flowable.just("]")));
+        return Flowable.concatArray(
+                Flowable.just("{\"data\": ["),
+                separated(data),
+                Flowable.just("], \"datadoc_metadata\": {\"variables\": ["),
+                separated(metadata),
+                Flowable.just("]}, \"metrics\": ["),
+                separated(metrics),
+                Flowable.just("], \"logs\": ["),
+                separated(logs),
+                Flowable.just("]}"));
+    }
+
+    /**
+     * Combine the <code>Flowable</code> JSON-objects (data, metadata, etc) into newline delimited JSON records. The
+     * data is split into records of up to <code>recordSize</code> values, so that they can be written as soon as they
+     * are processed. The metadata, metrics and logs follow in a record each.
+     *
+     * @param data       a flowable of String elements, each in JSON-format
+     * @param metadata   a flowable of String elements, each in JSON-format
+     * @param logs       a flowable of String elements, each in JSON-format (bounded by the metadata processor)
+     * @param metrics    a flowable of String elements, each in JSON-format
+     * @param recordSize the maximum number of values per data record
+     */
+    public static Flowable<String> serializeNdjson(Flowable<String> data, Flowable<String> metadata,
+                                                   Flowable<String> logs, Flowable<String> metrics,
+                                                   int recordSize) {
+        return Flowable.concatArray(
+                data.window(Math.max(1, recordSize)).concatMap(values -> Flowable.concatArray(
+                        Flowable.just("{\"data\": ["),
+                        separated(values),
+                        Flowable.just("]}\n"))),
+                Flowable.just("{\"datadoc_metadata\": {\"variables\": ["),
+                separated(metadata),
+                Flowable.just("]}}\n{\"metrics\": ["),
+                separated(metrics),
+                Flowable.just("]}\n{\"logs\": ["),
+                separated(logs),
+                Flowable.just("]}\n"));
     }
 
-    private static Flowable<String> enclose(Flowable<String> contents) {
-        return Flowable.concat(Flowable.just("{"), contents, Flowable.just("}"));
+    /**
+     * Emit the items with a comma between each of them.
+     */
+    private static Flowable<String> separated(Flowable<String> items) {
+        return Flowable.defer(() -> {
+            final boolean[] first = {true};
+            return items.concatMapIterable(item -> {
+                if (first[0]) {
+                    first[0] = false;
+                    return List.of(item);
+                }
+                return List.of(",", item);
+            });
+        });
     }
 
 }
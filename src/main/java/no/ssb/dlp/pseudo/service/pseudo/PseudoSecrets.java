@@ -1,21 +1,44 @@
 package no.ssb.dlp.pseudo.service.pseudo;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micronaut.context.annotation.Property;
+import io.micronaut.context.event.ApplicationEventPublisher;
+import io.micronaut.runtime.event.annotation.EventListener;
+import io.micronaut.runtime.server.event.ServerStartupEvent;
+import io.micronaut.scheduling.annotation.Scheduled;
 import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
 import no.ssb.dlp.pseudo.core.PseudoSecret;
 import no.ssb.dlp.pseudo.service.secrets.SecretService;
 import no.ssb.dlp.pseudo.service.tracing.WithSpan;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
+/**
+ * Holds the resolved pseudo secrets.
+ *
+ * <p>The secrets are resolved once at startup and kept in an immutable snapshot, which is atomically replaced when the
+ * secrets are refreshed (periodically, see <code>pseudo.secrets-refresh.interval</code>, or on demand). Resolving the
+ * secrets for a request is then a single volatile read.</p>
+ */
 @Singleton
+@Slf4j
 public class PseudoSecrets {
 
     private static final String DEFAULT_PSEUDO_SECRET_TYPE = "AES256";
     private final SecretService secretService;
     private final Map<String, PseudoSecret> configuredPseudoSecrets;
+    private final ApplicationEventPublisher<PseudoSecretsRefreshedEvent> eventPublisher;
+    private final Counter refreshFailures;
+    private volatile Snapshot snapshot;
 
     /**
      * Initialize PseudoSecrets
@@ -25,22 +48,71 @@ public class PseudoSecrets {
     public PseudoSecrets(
             SecretService secretService,
             @Property(name = "pseudo.secrets")
-            Map<String, PseudoSecret> configuredPseudoSecrets) {
+            Map<String, PseudoSecret> configuredPseudoSecrets,
+            ApplicationEventPublisher<PseudoSecretsRefreshedEvent> eventPublisher,
+            MeterRegistry meterRegistry) {
         this.secretService = secretService;
         this.configuredPseudoSecrets = Optional.ofNullable(configuredPseudoSecrets).orElse(Map.of());
+        this.eventPublisher = eventPublisher;
+        this.refreshFailures = Counter.builder("pseudo.secrets.refresh.failures")
+                .description("Number of failed attempts to refresh the pseudo secrets")
+                .register(meterRegistry);
+        Gauge.builder("pseudo.secrets.refresh.age", this, PseudoSecrets::refreshAgeSeconds)
+                .description("Seconds since the pseudo secrets were last resolved")
+                .baseUnit("seconds")
+                .register(meterRegistry);
     }
 
     /**
-     * Resolve pseudo secrets - either from secret manager or via environment.
+     * Get the resolved pseudo secrets. The secrets are resolved on first access if they have not been resolved yet.
      *
      * @return List of resolved pseudo secrets
      */
     public List<PseudoSecret> resolve() {
-        return resolvePseudoSecrets(configuredPseudoSecrets);
+        Snapshot current = snapshot;
+        return current != null ? current.secrets() : refresh().secrets();
+    }
+
+    @EventListener
+    public void onStartup(ServerStartupEvent event) {
+        // If the secrets can not be resolved at startup, they are resolved by the first request instead
+        tryRefresh();
+    }
+
+    @Scheduled(fixedDelay = "${pseudo.secrets-refresh.interval:10m}", initialDelay = "${pseudo.secrets-refresh.interval:10m}")
+    void scheduledRefresh() {
+        // Keep using the previous snapshot if the refresh fails
+        tryRefresh();
+    }
+
+    private void tryRefresh() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            refreshFailures.increment();
+            log.error("Failed to refresh pseudo secrets", e);
+        }
     }
 
     /**
-     * <p>Clean up configured pseudo secrets and resolve pseudo secret contents.</p>
+     * Resolve the pseudo secrets from the secret service and replace the current snapshot. If the secrets have
+     * changed, a {@link PseudoSecretsRefreshedEvent} is published.
+     *
+     * @return the new snapshot
+     */
+    public synchronized Snapshot refresh() {
+        final Snapshot previous = snapshot;
+        final Snapshot current = new Snapshot(resolvePseudoSecrets(configuredPseudoSecrets), Instant.now());
+        snapshot = current;
+        if (previous != null && !sameContent(previous.secrets(), current.secrets())) {
+            log.info("Pseudo secrets have changed");
+            eventPublisher.publishEvent(new PseudoSecretsRefreshedEvent(current.resolvedAt()));
+        }
+        return current;
+    }
+
+    /**
+     * <p>Resolve pseudo secret contents, without modifying the configured pseudo secrets.</p>
      *
      * <p>If content is specified, then this is used. If not, attempt to resolve pseudo secret from SecretService using
      * the PseudoSecret::id and PseudoSecret::version properties.</p>
@@ -56,13 +128,13 @@ public class PseudoSecrets {
 
         return configuredPseudoSecrets.entrySet().stream()
           .map(e -> {
-              PseudoSecret secret = e.getValue();
+              PseudoSecret secret = copyOf(e.getValue());
 
               secret.setName(e.getKey());
 
               // Resolve secret content if and only if 'id' is specified AND 'content' is not specified
               if (secret.getId() != null && secret.getContent() == null) {
-                  secret.setBase64EncodedContent(secretService.getCacheableSecret(secret.getId(), secret.getVersion()));
+                  secret.setBase64EncodedContent(secretService.getSecret(secret.getId(), secret.getVersion()));
               }
 
               if (secret.getContent() == null) {
@@ -79,6 +151,49 @@ public class PseudoSecrets {
 
     }
 
+    private static PseudoSecret copyOf(PseudoSecret configured) {
+        PseudoSecret copy = new PseudoSecret();
+        copy.setId(configured.getId());
+        copy.setVersion(configured.getVersion());
+        copy.setContent(configured.getContent());
+        copy.setType(configured.getType());
+        return copy;
+    }
+
+    private static boolean sameContent(List<PseudoSecret> a, List<PseudoSecret> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!Objects.equals(a.get(i).getName(), b.get(i).getName())
+                    || !Arrays.equals(a.get(i).getContent(), b.get(i).getContent())
+                    || !Objects.equals(a.get(i).getType(), b.get(i).getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double refreshAgeSeconds() {
+        Snapshot current = snapshot;
+        return current == null ? Double.NaN : Duration.between(current.resolvedAt(), Instant.now()).toSeconds();
+    }
+
+    /**
+     * An immutable set of resolved pseudo secrets.
+     */
+    public record Snapshot(List<PseudoSecret> secrets, Instant resolvedAt) {
+        public Snapshot {
+            secrets = List.copyOf(secrets);
+        }
+    }
+
+    /**
+     * Published when the pseudo secrets have been refreshed with changed content.
+     */
+    public record PseudoSecretsRefreshedEvent(Instant resolvedAt) {
+    }
+
     static class InvalidPseudoSecretException extends RuntimeException {
         public InvalidPseudoSecretException(String message) {
             super(message);
@@ -0,0 +1,56 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import io.micronaut.http.MediaType;
+
+/**
+ * The formats that field responses can be written in.
+ */
+public enum ResponseFormat {
+
+    /**
+     * A single JSON object with the <code>data</code>, <code>datadoc_metadata</code>, <code>metrics</code> and
+     * <code>logs</code> properties.
+     */
+    JSON(MediaType.APPLICATION_JSON),
+
+    /**
+     * Newline delimited JSON: one <code>data</code> record per chunk of values, followed by one record each for
+     * <code>datadoc_metadata</code>, <code>metrics</code> and <code>logs</code>. Clients may process the values of a
+     * record while the following records are being written.
+     */
+    NDJSON(PseudoResponseSerializer.APPLICATION_NDJSON);
+
+    private final String mediaType;
+
+    ResponseFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Choose the response format from the <code>Accept</code> header of a request: the acceptable media type with the
+     * highest quality that is supported wins, where wildcards stand for JSON. Responses are written as JSON unless
+     * NDJSON is preferred.
+     */
+    public static ResponseFormat fromAccept(String accept) {
+        if (accept == null) {
+            return JSON;
+        }
+        for (MediaType mediaType : MediaType.orderedOf(accept)) {
+            if (mediaType.getQualityAsNumber().signum() == 0) {
+                // A quality of 0 means "not acceptable"
+                continue;
+            }
+            if (mediaType.getName().equals(NDJSON.mediaType)) {
+                return NDJSON;
+            }
+            if (mediaType.getName().equals(JSON.mediaType) || mediaType.getSubtype().equals("*")) {
+                return JSON;
+            }
+        }
+        return JSON;
+    }
+}
@@ -10,7 +10,7 @@ import java.util.List;
 import java.util.Map;
 
 @Value
-@Builder
+@Builder(toBuilder = true)
 public class FieldMetadata {
 
     // Type of stable ID identifier that is used prior to pseudonymization. Currently only FREG_SNR is supported.
@@ -0,0 +1,56 @@
+package no.ssb.dlp.pseudo.service.pseudo.metadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collects up to a fixed number of log entries. Entries beyond the limit are only counted per category, and are
+ * reported as a single "suppressed" entry per category.
+ */
+public class LogCollector {
+
+    private final int limit;
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final List<String> entries = new ArrayList<>();
+    private final Map<String, LongAdder> suppressed = new ConcurrentSkipListMap<>();
+
+    public LogCollector(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Add a log entry. The entry is only created if it is kept.
+     *
+     * @param category the category to count the entry in if it is suppressed
+     * @param entry    supplies the log entry
+     */
+    public void add(String category, Supplier<String> entry) {
+        // Check before incrementing, so the counter does not keep growing once the limit is reached
+        if (reserved.get() < limit && reserved.getAndIncrement() < limit) {
+            final String log = entry.get();
+            synchronized (entries) {
+                entries.add(log);
+            }
+        } else {
+            suppressed.computeIfAbsent(category, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * @return the kept entries, followed by one entry per category of suppressed entries
+     */
+    public List<String> getEntries() {
+        final List<String> result;
+        synchronized (entries) {
+            result = new ArrayList<>(entries);
+        }
+        suppressed.forEach((category, count) ->
+                result.add(String.format("%d more %s log entries suppressed", count.sum(), category)));
+        return result;
+    }
+}
@@ -1,40 +1,107 @@
 package no.ssb.dlp.pseudo.service.pseudo.metadata;
 
+import io.reactivex.Flowable;
+import io.reactivex.processors.FlowableProcessor;
 import io.reactivex.processors.ReplayProcessor;
+import io.reactivex.subjects.CompletableSubject;
 import lombok.Value;
 import no.ssb.dlp.pseudo.core.util.Json;
 import org.reactivestreams.Publisher;
 
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 @Value
 public class PseudoMetadataProcessor {
+    /**
+     * The maximum number of log entries to include in a response. Further entries are only counted.
+     */
+    public static final int LOG_LIMIT = 100;
+    public static final String DEFAULT_LOG_CATEGORY = "warning";
+
     String correlationId;
     Map<String, Set<FieldMetadata>> uniqueMetadataPaths = new LinkedHashMap<>();
-    ReplayProcessor<FieldMetadata> datadocMetadata = ReplayProcessor.create();
-    ReplayProcessor<String> logs = ReplayProcessor.create();
-    ReplayProcessor<FieldMetric> metrics = ReplayProcessor.create();
+    AtomicReference<FieldMetadata> lastMetadata = new AtomicReference<>();
+    // Values may be processed concurrently, so emissions to the processors must be serialized
+    FlowableProcessor<FieldMetadata> datadocMetadata = ReplayProcessor.<FieldMetadata>create().toSerialized();
+    // Logs and metrics are only collected, and emitted once all values have been processed
+    LogCollector logs = new LogCollector(LOG_LIMIT);
+    Map<FieldMetric, LongAdder> metricCounts = new EnumMap<>(FieldMetric.class);
+    // The metric counts of the batch that is being processed on the current thread, if any
+    ThreadLocal<long[]> batchMetricCounts = new ThreadLocal<>();
+    CompletableSubject completed = CompletableSubject.create();
 
     public PseudoMetadataProcessor(String correlationId) {
         this.correlationId = correlationId;
+        for (FieldMetric fieldMetric : FieldMetric.values()) {
+            metricCounts.put(fieldMetric, new LongAdder());
+        }
     }
 
+    /**
+     * Register the metadata of a transformed value. Metadata that is equal to metadata registered before is ignored.
+     *
+     * <p>All values of a field usually share the same metadata instance, so repeats of the last registered instance
+     * are skipped without locking or hashing.</p>
+     */
     public void addMetadata(final FieldMetadata metadata) {
-        Set<FieldMetadata> rules = uniqueMetadataPaths.computeIfAbsent(metadata.getDataElementPath(), k -> new HashSet<>());
-        if (rules.add(metadata)) {
-            datadocMetadata.onNext(metadata);
+        if (metadata == lastMetadata.get()) {
+            return;
+        }
+        synchronized (this) {
+            Set<FieldMetadata> rules = uniqueMetadataPaths.computeIfAbsent(metadata.getDataElementPath(), k -> new HashSet<>());
+            if (rules.add(metadata)) {
+                datadocMetadata.onNext(metadata);
+            }
+            lastMetadata.set(metadata);
         }
     }
 
     public void addLog(String log) {
-        logs.onNext(log);
+        logs.add(DEFAULT_LOG_CATEGORY, () -> log);
+    }
+
+    /**
+     * Add a log entry, which is only created if it will be included in the response.
+     */
+    public void addLog(String category, Supplier<String> log) {
+        logs.add(category, log);
     }
 
     public void addMetric(FieldMetric fieldMetric) {
-        metrics.onNext(fieldMetric);
+        metricCounts.get(fieldMetric).increment();
+        final long[] batchCounts = batchMetricCounts.get();
+        if (batchCounts != null) {
+            batchCounts[fieldMetric.ordinal()]++;
+        }
+    }
+
+    /**
+     * Process a batch of values on the current thread, and count the metrics that are added by the batch in addition
+     * to the totals.
+     *
+     * @param counts receives the metric counts of the batch, indexed by {@link FieldMetric#ordinal()}
+     * @param batch  the processing of the batch
+     * @return the result of the batch
+     */
+    public <T> T countBatchMetrics(long[] counts, Supplier<T> batch) {
+        final long[] outer = batchMetricCounts.get();
+        batchMetricCounts.set(counts);
+        try {
+            return batch.get();
+        } finally {
+            if (outer == null) {
+                batchMetricCounts.remove();
+            } else {
+                batchMetricCounts.set(outer);
+            }
+        }
     }
 
     public Publisher<String> getMetadata() {
@@ -42,27 +109,24 @@ public class PseudoMetadataProcessor {
     }
 
     public Publisher<String> getLogs() {
-        return logs.map(Json::from);
+        return completed.andThen(Flowable.defer(() -> Flowable.fromIterable(logs.getEntries())))
+                .map(Json::from);
     }
 
     public Publisher<String> getMetrics() {
-        return metrics
-                .groupBy(FieldMetric::name)
-                .flatMapSingle(group ->
-                        group.count().map(c -> Map.of(group.getKey(), c.intValue())
-                        ))
+        return completed.andThen(Flowable.defer(() -> Flowable.fromIterable(metricCounts.entrySet())))
+                .filter(count -> count.getValue().sum() > 0)
+                .map(count -> Map.of(count.getKey().name(), count.getValue().sum()))
                 .map(Json::from);
     }
 
     public void onCompleteAll() {
         datadocMetadata.onComplete();
-        logs.onComplete();
-        metrics.onComplete();
+        completed.onComplete();
     }
 
     public void onErrorAll(Throwable t) {
         datadocMetadata.onError(t);
-        logs.onError(t);
-        metrics.onError(t);
+        completed.onError(t);
     }
 }
@@ -0,0 +1,138 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micronaut.context.annotation.Primary;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.async.publisher.Publishers;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A {@link SidService} that caches the SID mappings returned by the {@link ExternalSidService}, so that identifiers
+ * that are looked up repeatedly (e.g. by jobs processing the same population) are only sent to the SID service once
+ * in a while. Batch lookups only send the identifiers that are not cached.
+ *
+ * <p>Mappings are cached per identifier and snapshot date. Identifiers without a mapping are not cached.</p>
+ */
+@Singleton
+@Primary
+@Slf4j
+@Requires(notEnv = "local-sid")
+@Requires(property = SidLookupCacheConfig.PREFIX + ".enabled", notEquals = "false")
+public class CachingSidService implements SidService {
+
+    static final String CACHE_NAME = "sid_lookup";
+
+    private final ExternalSidService delegate;
+    private final Cache<CacheKey, SidInfo> cache;
+
+    public CachingSidService(ExternalSidService delegate, SidLookupCacheConfig config, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    @Override
+    public Publisher<SidInfo> lookupFnr(String fnr, Optional<String> snapshot) {
+        final CacheKey key = new CacheKey(fnr, snapshot.orElse(null), true);
+        final SidInfo cached = cache.getIfPresent(key);
+        return cached != null
+                ? Publishers.just(cached)
+                : Publishers.map(delegate.lookupFnr(fnr, snapshot), sidInfo -> cacheIfMapped(key, sidInfo));
+    }
+
+    @Override
+    public Publisher<SidInfo> lookupSnr(String snr, Optional<String> snapshot) {
+        final CacheKey key = new CacheKey(snr, snapshot.orElse(null), false);
+        final SidInfo cached = cache.getIfPresent(key);
+        return cached != null
+                ? Publishers.just(cached)
+                : Publishers.map(delegate.lookupSnr(snr, snapshot), sidInfo -> cacheIfMapped(key, sidInfo));
+    }
+
+    @Override
+    public Publisher<Map<String, SidInfo>> lookupFnr(List<String> fnrList, Optional<String> snapshot) {
+        return lookupAll(fnrList, snapshot, true, misses -> delegate.lookupFnr(misses, snapshot));
+    }
+
+    @Override
+    public Publisher<Map<String, SidInfo>> lookupSnr(List<String> snrList, Optional<String> snapshot) {
+        return lookupAll(snrList, snapshot, false, misses -> delegate.lookupSnr(misses, snapshot));
+    }
+
+    @Override
+    public Publisher<MultiSidLookupResponse> lookupMissing(List<String> fnrList, Optional<String> snapshot) {
+        return delegate.lookupMissing(fnrList, snapshot);
+    }
+
+    @Override
+    public Publisher<SnapshotInfo> getSnapshots() {
+        return delegate.getSnapshots();
+    }
+
+    /**
+     * Discard all cached SID mappings.
+     */
+    public void invalidateAll() {
+        log.info("Invalidate {} cached SID mappings", cache.estimatedSize());
+        cache.invalidateAll();
+    }
+
+    private Publisher<Map<String, SidInfo>> lookupAll(List<String> identifiers, Optional<String> snapshot,
+                                                      boolean isFnr,
+                                                      Function<List<String>, Publisher<Map<String, SidInfo>>> lookup) {
+        final String snapshotDate = snapshot.orElse(null);
+        final Map<String, SidInfo> hits = new HashMap<>();
+        final Set<String> misses = new LinkedHashSet<>();
+        for (String identifier : identifiers) {
+            SidInfo cached = cache.getIfPresent(new CacheKey(identifier, snapshotDate, isFnr));
+            if (cached != null) {
+                hits.put(identifier, cached);
+            } else {
+                misses.add(identifier);
+            }
+        }
+        if (misses.isEmpty()) {
+            return Publishers.just(hits);
+        }
+        log.debug("SID lookup cache: {} hits, {} misses", hits.size(), misses.size());
+        return Publishers.map(lookup.apply(new ArrayList<>(misses)), result -> {
+            final Map<String, SidInfo> merged = new HashMap<>(result);
+            result.forEach((identifier, sidInfo) -> cacheIfMapped(new CacheKey(identifier, snapshotDate, isFnr), sidInfo));
+            merged.putAll(hits);
+            return merged;
+        });
+    }
+
+    private SidInfo cacheIfMapped(CacheKey key, SidInfo sidInfo) {
+        if (sidInfo != null && sidInfo.fnr() != null && sidInfo.snr() != null) {
+            cache.put(key, sidInfo);
+        }
+        return sidInfo;
+    }
+
+    /**
+     * @param identifier   the fnr or snr
+     * @param snapshotDate the requested SID snapshot, or null for the latest snapshot
+     * @param fnr          true if the identifier is an fnr
+     */
+    private record CacheKey(String identifier, String snapshotDate, boolean fnr) {
+    }
+}
@@ -2,7 +2,6 @@ package no.ssb.dlp.pseudo.service.sid;
 
 import io.micronaut.context.annotation.Requires;
 import io.micronaut.core.async.publisher.Publishers;
-import lombok.RequiredArgsConstructor;
 import org.reactivestreams.Publisher;
 
 import jakarta.inject.Singleton;
@@ -11,11 +10,20 @@ import java.util.Map;
 import java.util.Optional;
 
 @Singleton
-@RequiredArgsConstructor
 @Requires(notEnv = "local-sid")
 public class ExternalSidService implements SidService {
 
     private final SidClient sidClient;
+    private final SidPartitionController partitionController;
+    private final SidBatchCoalescer coalescer;
+
+    public ExternalSidService(SidClient sidClient, SidCoalescingConfig coalescingConfig,
+                              SidPartitionController partitionController) {
+        this.sidClient = sidClient;
+        this.partitionController = partitionController;
+        this.coalescer = coalescingConfig.isEnabled()
+                ? new SidBatchCoalescer(sidClient, coalescingConfig, partitionController) : null;
+    }
 
     @Override
     public Publisher<SidInfo> lookupFnr(String fnr, Optional<String> snapshot) {
@@ -31,18 +39,24 @@ public class ExternalSidService implements SidService {
 
     @Override
     public Publisher<Map<String, SidInfo>> lookupFnr(List<String> fnrList, Optional<String> snapshot) {
-        return Publishers.map(sidClient.lookup(
+        if (coalescer != null) {
+            return coalescer.lookup(fnrList, snapshot, true);
+        }
+        return Publishers.map(partitionController.observe(fnrList.size(), sidClient.lookupMappings(
                         new MultiSidRequest.MultiSidRequestBuilder().fnrList(fnrList)
                         .datasetExtractionSnapshotTime(snapshot.orElse(null)).build()
-                ), MultiSidResponse::toMap
+                )), SidMappings::sidInfos
         );
     }
 
     public Publisher<Map<String, SidInfo>> lookupSnr(List<String> snrList, Optional<String> snapshot) {
-        return Publishers.map(sidClient.lookup(
+        if (coalescer != null) {
+            return coalescer.lookup(snrList, snapshot, false);
+        }
+        return Publishers.map(partitionController.observe(snrList.size(), sidClient.lookupMappings(
                         new MultiSidRequest.MultiSidRequestBuilder().snrList(snrList)
                                 .datasetExtractionSnapshotTime(snapshot.orElse(null)).build()
-                ), MultiSidResponse::toMap
+                )), SidMappings::sidInfos
         );
     }
 
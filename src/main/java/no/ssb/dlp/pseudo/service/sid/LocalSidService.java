@@ -7,10 +7,12 @@ import no.ssb.dlp.pseudo.service.sid.local.SidCache;
 import org.reactivestreams.Publisher;
 
 import jakarta.inject.Singleton;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * This class implements a local SID service, and should only be used for local end-to-end testing.
@@ -42,33 +44,45 @@ class LocalSidService implements SidService {
 
     @Override
     public Publisher<Map<String, SidInfo>> lookupFnr(List<String> fnrList, Optional<String> snapshot) {
-        return Publishers.just(sidCache.getCurrentSnrList(fnrList).stream()
-                .map(currentSnr -> new SidInfo.SidInfoBuilder()
-                        .snr(currentSnr)
-                        .fnr(sidCache.getCurrentFnrForSnr(currentSnr).orElse(null))
-                        .datasetExtractionSnapshotTime(snapshot.orElse(null)).build()
-                )
-                .collect(Collectors.toMap(SidInfo::fnr, sidInfo -> sidInfo)));
+        List<String> currentSnrs = sidCache.getCurrentSnrs(fnrList);
+        List<String> currentFnrs = sidCache.getCurrentFnrs(currentSnrs);
+        return Publishers.just(toSidInfoMap(fnrList, currentSnrs, currentFnrs, snapshot));
     }
 
     @Override
     public Publisher<Map<String, SidInfo>> lookupSnr(List<String> snrList, Optional<String> snapshot) {
-        return Publishers.just(sidCache.getCurrentFnrList(snrList).stream()
-                .map(currentFnr -> new SidInfo.SidInfoBuilder()
-                        .fnr(currentFnr)
-                        .snr(sidCache.getCurrentSnrForFnr(currentFnr).orElse(null))
-                        .datasetExtractionSnapshotTime(snapshot.orElse(null)).build()
-                )
-                .collect(Collectors.toMap(SidInfo::snr, sidInfo -> sidInfo)));
+        List<String> currentFnrs = sidCache.getCurrentFnrs(snrList);
+        List<String> currentSnrs = sidCache.getCurrentSnrs(currentFnrs);
+        return Publishers.just(toSidInfoMap(snrList, currentSnrs, currentFnrs, snapshot));
     }
 
     @Override
     public Publisher<MultiSidLookupResponse> lookupMissing(List<String> fnrList, Optional<String> snapshot) {
-        return Publishers.just(MultiSidLookupResponse.builder().missing(fnrList.stream().filter(fnr ->
-                sidCache.getCurrentSnrForFnr(fnr).isEmpty()).collect(Collectors.toList())).build()
+        List<String> currentSnrs = sidCache.getCurrentSnrs(fnrList);
+        return Publishers.just(MultiSidLookupResponse.builder().missing(IntStream.range(0, fnrList.size())
+                .filter(i -> currentSnrs.get(i) == null)
+                .mapToObj(fnrList::get)
+                .collect(Collectors.toList())).build()
         );
     }
 
+    /**
+     * Map each identifier to the SidInfo at the same position, skipping identifiers without a mapping.
+     */
+    private static Map<String, SidInfo> toSidInfoMap(List<String> identifiers, List<String> currentSnrs,
+                                                     List<String> currentFnrs, Optional<String> snapshot) {
+        Map<String, SidInfo> result = new HashMap<>();
+        for (int i = 0; i < identifiers.size(); i++) {
+            if (currentSnrs.get(i) != null && currentFnrs.get(i) != null) {
+                result.put(identifiers.get(i), new SidInfo.SidInfoBuilder()
+                        .snr(currentSnrs.get(i))
+                        .fnr(currentFnrs.get(i))
+                        .datasetExtractionSnapshotTime(snapshot.orElse(null)).build());
+            }
+        }
+        return result;
+    }
+
     @Override
     public Publisher<SnapshotInfo> getSnapshots() {
         return Publishers.just(SnapshotInfo.builder().items(List.of("2023-04-25")).build());
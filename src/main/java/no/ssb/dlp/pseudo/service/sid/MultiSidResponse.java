@@ -8,14 +8,14 @@ import lombok.extern.jackson.Jacksonized;
 
 import java.util.HashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 
 @Data
 @Builder
 @Jacksonized
 @Introspected
-@Serdeable
+@Serdeable.Serializable
+@Serdeable.Deserializable(using = MultiSidResponseDeserializer.class)
 public class MultiSidResponse {
 
     private final Mapping mapping;
@@ -29,18 +29,24 @@ public class MultiSidResponse {
     public record Mapping (List<String> fnrList, List<String> snrList, List<String> snr, List<String> fnr) { }
 
     public Map<String, SidInfo> toMap() {
-        Map<String, SidInfo> result = new HashMap<>();
-
-        ListIterator<String> identifierIterator = getMapping().fnrList != null ?
-                getMapping().fnrList().listIterator() : getMapping().snrList().listIterator();
-
-        for (ListIterator<String> it = identifierIterator; it.hasNext(); ) {
-            int index = it.nextIndex();
-            result.put(it.next(), new SidInfo.SidInfoBuilder()
-                    .snr(getMapping().snr().get(index))
-                    .fnr(getMapping().fnr().get(index))
-                    .datasetExtractionSnapshotTime(getDatasetExtractionSnapshotTime())
-                    .build());
+        return toMap(mapping, datasetExtractionSnapshotTime);
+    }
+
+    /**
+     * Index the mappings of a batch response by the requested identifiers.
+     */
+    static Map<String, SidInfo> toMap(Mapping mapping, String datasetExtractionSnapshotTime) {
+        final List<String> identifiers = mapping == null ? null
+                : mapping.fnrList() != null ? mapping.fnrList() : mapping.snrList();
+        if (identifiers == null) {
+            return new HashMap<>();
+        }
+        final Map<String, SidInfo> result = HashMap.newHashMap(identifiers.size());
+        for (int i = 0; i < identifiers.size(); i++) {
+            result.put(identifiers.get(i), new SidInfo(
+                    mapping.fnr() != null ? mapping.fnr().get(i) : null,
+                    mapping.snr() != null ? mapping.snr().get(i) : null,
+                    datasetExtractionSnapshotTime));
         }
         return result;
     }
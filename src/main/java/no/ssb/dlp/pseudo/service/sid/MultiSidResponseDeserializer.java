@@ -0,0 +1,88 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micronaut.core.type.Argument;
+import io.micronaut.serde.Decoder;
+import io.micronaut.serde.Deserializer;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decodes a {@link MultiSidResponse} token by token. The identifier lists of a batch response may hold tens of
+ * thousands of entries, so each list is decoded straight into an array that is sized by the first list of the
+ * mapping, instead of going through the generic bean deserializer.
+ *
+ * <p>This keeps all lists of the response, which is needed to find the missing identifiers. Batch lookups that only
+ * need the mappings are decoded by the {@link SidMappingsDeserializer}, which shares the decoding of the mapping.</p>
+ */
+@Singleton
+public class MultiSidResponseDeserializer implements Deserializer<MultiSidResponse> {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Set<String> MAPPING_FIELDS = Set.of("fnrList", "snrList", "fnr", "snr");
+
+    @Override
+    public MultiSidResponse deserialize(Decoder decoder, DecoderContext context,
+                                        Argument<? super MultiSidResponse> type) throws IOException {
+        final MultiSidResponse.MultiSidResponseBuilder response = MultiSidResponse.builder();
+        final Decoder object = decoder.decodeObject(type);
+        String key;
+        while ((key = object.decodeKey()) != null) {
+            if (object.decodeNull()) {
+                continue;
+            }
+            switch (key) {
+                case "mapping" -> response.mapping(decodeMapping(object));
+                case "missing" -> response.missing(decodeStrings(object, -1));
+                case "datasetExtractionSnapshotTime" -> response.datasetExtractionSnapshotTime(object.decodeString());
+                default -> object.skipValue();
+            }
+        }
+        object.finishStructure();
+        return response.build();
+    }
+
+    static MultiSidResponse.Mapping decodeMapping(Decoder decoder) throws IOException {
+        final MultiSidResponse.Mapping.MappingBuilder mapping = MultiSidResponse.Mapping.builder();
+        final Decoder object = decoder.decodeObject();
+        // All lists of a mapping have the same length, so only the first list needs to grow
+        int size = -1;
+        String key;
+        while ((key = object.decodeKey()) != null) {
+            if (object.decodeNull()) {
+                continue;
+            }
+            if (!MAPPING_FIELDS.contains(key)) {
+                object.skipValue();
+                continue;
+            }
+            final List<String> values = decodeStrings(object, size);
+            size = values.size();
+            switch (key) {
+                case "fnrList" -> mapping.fnrList(values);
+                case "snrList" -> mapping.snrList(values);
+                case "fnr" -> mapping.fnr(values);
+                default -> mapping.snr(values);
+            }
+        }
+        object.finishStructure();
+        return mapping.build();
+    }
+
+    static List<String> decodeStrings(Decoder decoder, int expectedSize) throws IOException {
+        final Decoder array = decoder.decodeArray();
+        String[] values = new String[expectedSize >= 0 ? expectedSize : INITIAL_CAPACITY];
+        int size = 0;
+        while (array.hasNextArrayValue()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, size * 2));
+            }
+            values[size++] = array.decodeStringNullable();
+        }
+        array.finishStructure();
+        return Arrays.asList(size == values.length ? values : Arrays.copyOf(values, size));
+    }
+}
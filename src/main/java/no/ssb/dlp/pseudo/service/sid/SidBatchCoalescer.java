@@ -0,0 +1,290 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merges concurrent batch lookups for the same SID snapshot into shared requests to the SID service.
+ *
+ * <p>Identifiers that are already being looked up are not requested again; the caller will get the result of the
+ * request that is in flight. As long as fewer than <code>sid.coalescing.max-concurrent-batches</code> requests are in
+ * flight, new identifiers are sent right away. Otherwise they are queued, and all identifiers queued by the time a
+ * request completes are sent together.</p>
+ */
+@Slf4j
+class SidBatchCoalescer {
+
+    private final SidClient sidClient;
+    private final SidCoalescingConfig config;
+    private final SidPartitionController partitionController;
+    private final Map<LaneKey, Lane> lanes = new ConcurrentHashMap<>();
+
+    SidBatchCoalescer(SidClient sidClient, SidCoalescingConfig config, SidPartitionController partitionController) {
+        this.sidClient = sidClient;
+        this.config = config;
+        this.partitionController = partitionController;
+    }
+
+    /**
+     * Look up identifiers. Nothing is requested until the returned publisher is subscribed to. A lookup that is
+     * cancelled (e.g. because it timed out) leaves its batches, and a batch that no lookup waits for any more is
+     * abandoned, so that a retry of the lookup sends a new request instead of joining the one it gave up on.
+     */
+    Publisher<Map<String, SidInfo>> lookup(List<String> identifiers, Optional<String> snapshot, boolean isFnr) {
+        return Single.<Map<String, SidInfo>>create(emitter -> {
+            final Lookup lookup = join(identifiers, snapshot, isFnr);
+            emitter.setCancellable(lookup::leave);
+            lookup.result.whenComplete((sidInfos, error) -> {
+                if (error != null) {
+                    emitter.tryOnError(error);
+                } else {
+                    emitter.onSuccess(sidInfos);
+                }
+            });
+        }).toFlowable();
+    }
+
+    private Lookup join(List<String> identifiers, Optional<String> snapshot, boolean isFnr) {
+        final Lane lane = lanes.computeIfAbsent(new LaneKey(snapshot.orElse(null), isFnr), Lane::new);
+        // The identifiers of this lookup, by the batch that they are requested in
+        final Map<Batch, List<String>> requested = new LinkedHashMap<>();
+        final List<Batch> batches;
+        int size = 0;
+        int joined = 0;
+        synchronized (lane) {
+            for (String identifier : new LinkedHashSet<>(identifiers)) {
+                Batch batch = lane.inFlight.get(identifier);
+                if (batch == null) {
+                    batch = lane.enqueue(identifier);
+                } else {
+                    joined++;
+                }
+                requested.computeIfAbsent(batch, b -> {
+                    b.waiting++;
+                    return new ArrayList<>();
+                }).add(identifier);
+                size++;
+            }
+            batches = lane.takeBatches();
+        }
+        if (joined > 0) {
+            log.debug("Joined {} of {} identifiers to SID-mapping requests in flight", joined, size);
+        }
+        batches.forEach(batch -> dispatch(lane, batch));
+        return new Lookup(lane, requested, collect(requested, size));
+    }
+
+    /**
+     * Collect the mappings of a lookup from the batches that its identifiers are requested in. A lookup that requested
+     * a whole batch gets the decoded mappings of the batch as they are.
+     *
+     * <p>The lookup is completed with the error of a failed batch as is, so that callers can tell client errors from
+     * the rest.</p>
+     */
+    private static CompletableFuture<Map<String, SidInfo>> collect(Map<Batch, List<String>> requested, int size) {
+        final CompletableFuture<Map<String, SidInfo>> lookup = new CompletableFuture<>();
+        if (requested.isEmpty()) {
+            lookup.complete(new HashMap<>());
+            return lookup;
+        }
+        final Map<String, SidInfo> sidInfos = new ConcurrentHashMap<>(size);
+        final AtomicInteger remaining = new AtomicInteger(requested.size());
+        requested.forEach((batch, identifiers) -> batch.result.whenComplete((batchSidInfos, error) -> {
+            if (error != null) {
+                lookup.completeExceptionally(error);
+            } else if (requested.size() == 1 && identifiers.size() == batch.identifiers.size()) {
+                // The mappings may be shared with other lookups that requested the same batch
+                lookup.complete(Collections.unmodifiableMap(batchSidInfos));
+            } else {
+                for (String identifier : identifiers) {
+                    SidInfo sidInfo = batchSidInfos.get(identifier);
+                    if (sidInfo != null) {
+                        sidInfos.put(identifier, sidInfo);
+                    }
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    lookup.complete(sidInfos);
+                }
+            }
+        }));
+        return lookup;
+    }
+
+    private void dispatch(Lane lane, Batch batch) {
+        final MultiSidRequest.MultiSidRequestBuilder request = MultiSidRequest.builder()
+                .datasetExtractionSnapshotTime(lane.key.snapshot());
+        if (lane.key.fnr()) {
+            request.fnrList(batch.identifiers);
+        } else {
+            request.snrList(batch.identifiers);
+        }
+        // Only the actual requests tell the partition controller how the SID service copes with the batch size
+        final Disposable disposable = partitionController.observe(batch.identifiers.size(),
+                        Flowable.defer(() -> sidClient.lookupMappings(request.build())))
+                .firstElement()
+                .subscribe(
+                        response -> complete(lane, batch, response.sidInfos(), null),
+                        error -> complete(lane, batch, null, error),
+                        () -> complete(lane, batch, null,
+                                new NoSuchElementException("Empty response from SID service")));
+        final boolean abandoned;
+        synchronized (lane) {
+            abandoned = batch.done;
+            batch.request = disposable;
+        }
+        if (abandoned) {
+            // The batch was abandoned (or completed) while the request was being sent
+            disposable.dispose();
+        }
+    }
+
+    private void complete(Lane lane, Batch batch, Map<String, SidInfo> sidInfos, Throwable error) {
+        final List<Batch> batches;
+        synchronized (lane) {
+            if (batch.done) {
+                // Abandoned, no lookup waits for the result
+                return;
+            }
+            lane.finish(batch);
+            batches = lane.takeBatches();
+        }
+        if (error != null) {
+            batch.result.completeExceptionally(error);
+        } else {
+            batch.result.complete(sidInfos);
+        }
+        batches.forEach(next -> dispatch(lane, next));
+    }
+
+    /**
+     * A lookup that waits for the batches that its identifiers are requested in.
+     */
+    private final class Lookup {
+        private final Lane lane;
+        private final Map<Batch, List<String>> requested;
+        private final CompletableFuture<Map<String, SidInfo>> result;
+
+        private Lookup(Lane lane, Map<Batch, List<String>> requested, CompletableFuture<Map<String, SidInfo>> result) {
+            this.lane = lane;
+            this.requested = requested;
+            this.result = result;
+        }
+
+        /**
+         * Stop waiting for the batches of the lookup. Batches that are not done and that no other lookup waits for are
+         * abandoned.
+         */
+        private void leave() {
+            final List<Disposable> abandoned = new ArrayList<>();
+            final List<Batch> batches;
+            synchronized (lane) {
+                for (Batch batch : requested.keySet()) {
+                    if (--batch.waiting == 0 && !batch.done) {
+                        log.debug("Abandon SID-mapping request for {} identifiers", batch.identifiers.size());
+                        if (!lane.queued.remove(batch)) {
+                            lane.finish(batch);
+                            if (batch.request != null) {
+                                abandoned.add(batch.request);
+                            }
+                        } else {
+                            batch.done = true;
+                            batch.identifiers.forEach(identifier -> lane.inFlight.remove(identifier, batch));
+                        }
+                    }
+                }
+                batches = lane.takeBatches();
+            }
+            abandoned.forEach(Disposable::dispose);
+            batches.forEach(next -> dispatch(lane, next));
+        }
+    }
+
+    /**
+     * @param snapshot the requested SID snapshot, or null for the latest snapshot
+     * @param fnr      true if the identifiers are fnrs
+     */
+    private record LaneKey(String snapshot, boolean fnr) {
+    }
+
+    /**
+     * The identifiers of one request to the SID service. The identifiers are only added while the batch is queued.
+     */
+    private static final class Batch {
+        private final List<String> identifiers = new ArrayList<>();
+        private final CompletableFuture<Map<String, SidInfo>> result = new CompletableFuture<>();
+        // The following fields are guarded by the monitor of the batch's lane
+        private int waiting;
+        private boolean done;
+        private Disposable request;
+    }
+
+    /**
+     * The lookups of one {@link LaneKey}. All fields are guarded by the lane's monitor.
+     */
+    private final class Lane {
+        private final LaneKey key;
+        private final Map<String, Batch> inFlight = new HashMap<>();
+        private final Deque<Batch> queued = new ArrayDeque<>();
+        private int runningBatches;
+
+        private Lane(LaneKey key) {
+            this.key = key;
+        }
+
+        /**
+         * Add an identifier to the last queued batch, or to a new batch if that one is full. Batches are no larger
+         * than the current partition size, so that the size that the SID service is tuned to is respected.
+         */
+        private Batch enqueue(String identifier) {
+            final int maxSize = Math.min(config.getMaxBatchSize(), partitionController.partitionSize());
+            Batch batch = queued.peekLast();
+            if (batch == null || batch.identifiers.size() >= maxSize) {
+                batch = new Batch();
+                queued.addLast(batch);
+            }
+            batch.identifiers.add(identifier);
+            inFlight.put(identifier, batch);
+            return batch;
+        }
+
+        /**
+         * Mark a running batch as done and free its request slot, so that its identifiers are requested again by the
+         * next lookup.
+         */
+        private void finish(Batch batch) {
+            batch.done = true;
+            runningBatches--;
+            batch.identifiers.forEach(identifier -> inFlight.remove(identifier, batch));
+        }
+
+        /**
+         * Take as many queued batches as the number of free request slots allows.
+         */
+        private List<Batch> takeBatches() {
+            final List<Batch> batches = new ArrayList<>();
+            while (!queued.isEmpty() && runningBatches < Math.max(1, config.getMaxConcurrentBatches())) {
+                batches.add(queued.pollFirst());
+                runningBatches++;
+            }
+            return batches;
+        }
+    }
+}
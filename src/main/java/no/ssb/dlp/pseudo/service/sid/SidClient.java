@@ -20,6 +20,10 @@ public interface SidClient {
     @ExecuteOn(TaskExecutors.BLOCKING)
     Publisher<MultiSidResponse> lookup(@Body MultiSidRequest multiSidRequest);
 
+    @Post("/sid/map/batch")
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    Publisher<SidMappings> lookupMappings(@Body MultiSidRequest multiSidRequest);
+
     @Get("/sid/snapshots")
     @ExecuteOn(TaskExecutors.BLOCKING)
     Publisher<SnapshotInfo> snapshots();
@@ -0,0 +1,28 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(SidCoalescingConfig.PREFIX)
+public class SidCoalescingConfig {
+
+    public static final String PREFIX = "sid.coalescing";
+
+    /**
+     * If enabled, concurrent batch lookups for the same SID snapshot share their requests to the SID service.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The maximum number of identifiers to send to the SID service in one batch request.
+     */
+    private int maxBatchSize = 50_000;
+
+    /**
+     * The maximum number of batch requests per SID snapshot that may be in flight at the same time. Lookups that
+     * arrive while this many requests are in flight are merged into the next batch request.
+     */
+    private int maxConcurrentBatches = 4;
+
+}
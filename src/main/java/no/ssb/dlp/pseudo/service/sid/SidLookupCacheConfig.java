@@ -0,0 +1,30 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(SidLookupCacheConfig.PREFIX)
+public class SidLookupCacheConfig {
+
+    public static final String PREFIX = "sid.lookup-cache";
+
+    /**
+     * If enabled, SID mappings returned by the SID service are reused across requests.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The maximum number of SID mappings to keep.
+     */
+    private long maximumSize = 1_000_000;
+
+    /**
+     * How long a SID mapping may be reused. Lookups without a snapshot date refer to the latest SID snapshot, so this
+     * also bounds how long a newly published snapshot may go unnoticed.
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(15);
+
+}
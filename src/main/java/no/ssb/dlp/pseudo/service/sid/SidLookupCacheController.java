@@ -0,0 +1,28 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Delete;
+import io.micronaut.security.annotation.Secured;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import no.ssb.dlp.pseudo.service.security.PseudoServiceRole;
+
+@RequiredArgsConstructor
+@Controller("/sid/lookup-cache")
+@Secured(PseudoServiceRole.ADMIN)
+@Tag(name = "SID operations")
+@Requires(beans = CachingSidService.class)
+public class SidLookupCacheController {
+
+    private final CachingSidService cachingSidService;
+
+    @Operation(summary = "Invalidate SID lookup cache", description = "Discard all cached SID mappings")
+    @Delete
+    public HttpResponse<Void> invalidate() {
+        cachingSidService.invalidateAll();
+        return HttpResponse.noContent();
+    }
+}
@@ -2,8 +2,11 @@ package no.ssb.dlp.pseudo.service.sid;
 
 import com.google.auto.service.AutoService;
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.Lists;
 import io.micronaut.http.HttpStatus;
+import io.reactivex.Completable;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
 import io.micronaut.http.client.exceptions.HttpClientResponseException;
 import lombok.extern.slf4j.Slf4j;
 import no.ssb.dapla.dlp.pseudo.func.PseudoFuncInput;
@@ -16,12 +19,11 @@ import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -43,9 +45,11 @@ public class SidMapper implements Mapper {
      */
     public static final String MAP_FAILURE_METADATA = "map-failure-metadata";
     private final SidService sidService;
+    private final SidSnapshotCatalog snapshotCatalog;
 
-    private static final int DEFAULT_PARTITION_SIZE = 50000;
-    private final int partitionSize;
+    private static final int DEFAULT_PARTITION_CONCURRENCY = 4;
+    private final SidPartitionController partitionController;
+    private final int partitionConcurrency;
     private Map<String, Object> config = Collections.emptyMap();
 
     static final String NO_MATCHING_FNR = "No SID-mapping found for fnr %s";
@@ -57,12 +61,14 @@ public class SidMapper implements Mapper {
 
     public SidMapper() {
         sidService = Application.getContext().getBean(SidService.class);
-        partitionSize = Application.getContext().getProperty("sid.mapper.partition.size", Integer.class,
-                DEFAULT_PARTITION_SIZE);
+        snapshotCatalog = Application.getContext().getBean(SidSnapshotCatalog.class);
+        partitionController = Application.getContext().getBean(SidPartitionController.class);
+        partitionConcurrency = Application.getContext().getProperty("sid.mapper.partition.concurrency", Integer.class,
+                DEFAULT_PARTITION_CONCURRENCY);
     }
 
     private final Set<String> identifiers = ConcurrentHashMap.newKeySet();
-    private final ConcurrentHashMap<String, ObservableSubscriber<Map<String, SidInfo>>> bulkRequest = new ConcurrentHashMap<>();
+    private volatile BulkLookupResult bulkLookupResult;
 
     @Override
     public void init(PseudoFuncInput input) {
@@ -83,35 +89,121 @@ public class SidMapper implements Mapper {
         if (identifier == null) {
             return PseudoFuncOutput.of(null);
         }
-        // Execute the bulk request if necessary
-        if (bulkRequest.isEmpty()) {
-            // Split fnrs or snrs into chunks of BULK_SIZE
-            for (List<String> bulkIdentifiers : Lists.partition(List.copyOf(identifiers), partitionSize)) {
-                log.info("Execute SID-mapping bulk request");
-                final ObservableSubscriber<Map<String, SidInfo>> subscriber;
-
-                if (isFnr) {
-                    subscriber = ObservableSubscriber.subscribe(
-                            sidService.lookupFnr(bulkIdentifiers, getSnapshot()));
-                } else {
-                    subscriber = ObservableSubscriber.subscribe(
-                            sidService.lookupSnr(bulkIdentifiers, getSnapshot()));
-                }
-
-                for (String id : bulkIdentifiers) {
-                    bulkRequest.put(id, subscriber);
+        // Values may be mapped concurrently, so make sure the bulk lookup is only done once
+        BulkLookupResult result = bulkLookupResult;
+        if (result == null) {
+            synchronized (this) {
+                if (bulkLookupResult == null) {
+                    bulkLookupResult = bulkLookup(isFnr);
                 }
+                result = bulkLookupResult;
             }
         }
-        SidInfo result = bulkRequest.get(identifier).awaitResult()
-                .orElseThrow(() -> new RuntimeException("SID service did not respond"))
-                .get(identifier);
+        if (result.failed().contains(identifier)) {
+            throw new RuntimeException("SID service did not respond");
+        }
+
+        return createMappingLogsAndOutput(result.sidInfos().get(identifier), isFnr, identifier);
+    }
+
+    /**
+     * Look up all identifiers that have been collected by {@link #init(PseudoFuncInput)}. The identifiers are split
+     * into partitions sized by the {@link SidPartitionController}, and up to
+     * <code>sid.mapper.partition.concurrency</code> partitions are requested at the same time.
+     *
+     * <p>Each request is bounded by <code>sid.mapper.partition.timeout</code>, rather than the bulk lookup as a whole,
+     * so that the time allowed grows with the number of partitions. Since retries and splits are bounded as well, the
+     * bulk lookup always completes.</p>
+     */
+    private BulkLookupResult bulkLookup(boolean isFnr) {
+        final BulkLookupResult result = new BulkLookupResult(new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet());
+        final Optional<String> snapshot = getSnapshot();
+        final List<String> pending = List.copyOf(identifiers);
+        log.info("Execute SID-mapping bulk request(s) for {} identifiers", pending.size());
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+
+        // Partitions are cut when they are requested, so that each one gets the current partition size
+        final Flowable<List<String>> partitions = Flowable.generate(() -> 0, (Integer from, Emitter<List<String>> emitter) -> {
+            if (from >= pending.size()) {
+                emitter.onComplete();
+                return from;
+            }
+            final int to = Math.min(pending.size(), from + partitionController.partitionSize());
+            emitter.onNext(pending.subList(from, to));
+            return to;
+        });
+        partitions
+                .flatMapCompletable(partition -> lookupPartition(partition, isFnr, snapshot, 0, result),
+                        false, partitionConcurrency)
+                .blockingAwait();
+        log.info("SID-mapping bulk request(s) completed after {} seconds", stopwatch.stop().elapsed(TimeUnit.SECONDS));
+        return result;
+    }
 
-        return createMappingLogsAndOutput(result, isFnr, identifier);
+    /**
+     * Look up one partition. A partition that still fails after all retries is split in halves, which are looked up
+     * separately, up to <code>sid.mapper.partition.max-splits</code> times.
+     */
+    private Completable lookupPartition(List<String> partition, boolean isFnr, Optional<String> snapshot, int splits,
+                                        BulkLookupResult result) {
+        return lookupWithRetry(partition, isFnr, snapshot, 0)
+                .doOnNext(result.sidInfos()::putAll)
+                .ignoreElements()
+                .onErrorResumeNext(e -> {
+                    if (splits < partitionController.maxSplits() && partition.size() > 1 && isRetryable(e)) {
+                        log.warn("SID-mapping request for {} identifiers failed. Split and retry", partition.size());
+                        final int middle = partition.size() / 2;
+                        return Completable.mergeArray(
+                                lookupPartition(partition.subList(0, middle), isFnr, snapshot, splits + 1, result),
+                                lookupPartition(partition.subList(middle, partition.size()), isFnr, snapshot,
+                                        splits + 1, result));
+                    }
+                    logLookupError(e);
+                    result.failed().addAll(partition);
+                    return Completable.complete();
+                });
+    }
 
+    private Flowable<Map<String, SidInfo>> lookupWithRetry(List<String> partition, boolean isFnr,
+                                                           Optional<String> snapshot, int attempt) {
+        // The partition size is tuned by the SID service client, which sees the latency of the actual requests
+        return Flowable.defer(() -> isFnr
+                        ? sidService.lookupFnr(partition, snapshot)
+                        : sidService.lookupSnr(partition, snapshot))
+                .timeout(partitionController.timeout().toMillis(), TimeUnit.MILLISECONDS, Schedulers.io())
+                .switchIfEmpty(Flowable.error(new NoSuchElementException("Empty response from SID service")))
+                .onErrorResumeNext((Throwable e) -> {
+                    if (!isRetryable(e) || attempt >= partitionController.maxRetries()) {
+                        return Flowable.error(e);
+                    }
+                    final Duration backoff = partitionController.backoff(attempt);
+                    log.warn("SID-mapping request for {} identifiers failed. Retry in {} ms", partition.size(),
+                            backoff.toMillis());
+                    return Flowable.timer(backoff.toMillis(), TimeUnit.MILLISECONDS, Schedulers.io())
+                            .flatMap(tick -> lookupWithRetry(partition, isFnr, snapshot, attempt + 1));
+                });
+    }
 
+    /**
+     * Requests that were rejected by the SID service (e.g. not found) will not succeed if they are retried.
+     */
+    static boolean isRetryable(Throwable throwable) {
+        return !(throwable instanceof HttpClientResponseException exception)
+                || exception.getStatus().getCode() >= 500;
     }
 
+    private static void logLookupError(Throwable throwable) {
+        if (throwable instanceof HttpClientResponseException exception) {
+            if (exception.getStatus() == HttpStatus.NOT_FOUND) {
+                // This may happen more frequently, so log at debug level
+                log.debug("Error was", exception);
+            } else {
+                log.warn("Unexpected error", exception);
+            }
+        } else {
+            log.warn("Unexpected error", throwable);
+        }
+    }
 
     private PseudoFuncOutput createMappingLogsAndOutput(SidInfo sidInfo, boolean isFnr, String identifier) {
         //Mapping for fnr
@@ -187,33 +279,20 @@ public class SidMapper implements Mapper {
     @Override
     public void setConfig(Map<String, Object> config) {
         if (config.containsKey(MapFuncConfig.Param.SNAPSHOT_DATE)) {
-            SnapshotInfo availableSnapshots = ObservableSubscriber.subscribe(this.sidService.getSnapshots()).awaitResult()
-                    .orElseThrow(() -> new RuntimeException("SID service did not respond"));
-            DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
-            LocalDate requestedSnapshotDate;
-            try { // Convert the SID snapshot in the request to Date format
-                requestedSnapshotDate = LocalDate.from(formatter.
-                        parse(config.get(MapFuncConfig.Param.SNAPSHOT_DATE).toString()));
-            } catch (DateTimeParseException e) {
-                throw new InvalidSidSnapshotDateException(String.format("Invalid snapshot date format. Valid dates are: %s",
-                        String.join(", ", availableSnapshots.items())));
-            }
-            List<LocalDate> availableSnapshotDates = availableSnapshots.items().stream()
-                    .map(snapshot -> {
-                        try {
-                            return LocalDate.from(formatter.parse(snapshot));
-                        } catch (DateTimeParseException e) {
-                            throw new RuntimeException("Invalid date format from SID service");
-                        }
-                    }).toList();
-            if (availableSnapshotDates.stream().allMatch(requestedSnapshotDate::isBefore)) {
-                throw new InvalidSidSnapshotDateException(String.format("Requested date is of an earlier date than all available SID dates. Valid dates are: %s",
-                        String.join(", ", availableSnapshots.items())));
-            }
+            snapshotCatalog.validate(config.get(MapFuncConfig.Param.SNAPSHOT_DATE).toString());
         }
         this.config = config;
     }
 
+    /**
+     * The outcome of a bulk lookup.
+     *
+     * @param sidInfos the SID mappings found, by identifier
+     * @param failed   identifiers of partitions that could not be looked up
+     */
+    private record BulkLookupResult(Map<String, SidInfo> sidInfos, Set<String> failed) {
+    }
+
     /**
      * A Subscriber that stores the publishers results and provides a latch so can block on completion.
      *
@@ -245,16 +324,7 @@ public class SidMapper implements Mapper {
 
         @Override
         public void onError(Throwable throwable) {
-            if (throwable instanceof HttpClientResponseException exception) {
-                if (exception.getStatus() == HttpStatus.NOT_FOUND) {
-                    // This may happen more frequently, so log at debug level
-                    log.debug("Error was", exception);
-                } else {
-                    log.warn("Unexpected error", exception);
-                }
-            } else {
-                log.warn("Unexpected error", throwable);
-            }
+            logLookupError(throwable);
             onComplete();
         }
 
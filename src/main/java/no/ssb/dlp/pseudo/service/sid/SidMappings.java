@@ -0,0 +1,16 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.Map;
+
+/**
+ * The SID mappings of a batch response, keyed by the requested identifier.
+ *
+ * <p>Unlike {@link MultiSidResponse}, which keeps the parallel lists of the response, a batch response is decoded
+ * straight into this map by the {@link SidMappingsDeserializer}.</p>
+ *
+ * @param sidInfos the mapping of each identifier that the SID service returned
+ */
+@Serdeable.Deserializable(using = SidMappingsDeserializer.class)
+public record SidMappings(Map<String, SidInfo> sidInfos) { }
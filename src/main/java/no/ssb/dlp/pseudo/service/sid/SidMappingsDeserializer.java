@@ -0,0 +1,40 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micronaut.core.type.Argument;
+import io.micronaut.serde.Decoder;
+import io.micronaut.serde.Deserializer;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+
+/**
+ * Decodes a batch response of the SID service into {@link SidMappings}. The mapping is decoded like the mapping of a
+ * {@link MultiSidResponse}, and is only kept until the map has been filled. The <code>missing</code> list and any
+ * other fields are skipped.
+ */
+@Singleton
+public class SidMappingsDeserializer implements Deserializer<SidMappings> {
+
+    @Override
+    public SidMappings deserialize(Decoder decoder, DecoderContext context,
+                                   Argument<? super SidMappings> type) throws IOException {
+        MultiSidResponse.Mapping mapping = null;
+        String snapshotTime = null;
+        final Decoder object = decoder.decodeObject(type);
+        String key;
+        while ((key = object.decodeKey()) != null) {
+            if (object.decodeNull()) {
+                continue;
+            }
+            switch (key) {
+                case "mapping" -> mapping = MultiSidResponseDeserializer.decodeMapping(object);
+                case "datasetExtractionSnapshotTime" -> snapshotTime = object.decodeString();
+                default -> object.skipValue();
+            }
+        }
+        object.finishStructure();
+
+        // The snapshot time may follow the mapping, so the map can only be filled once the response has been read
+        return new SidMappings(MultiSidResponse.toMap(mapping, snapshotTime));
+    }
+}
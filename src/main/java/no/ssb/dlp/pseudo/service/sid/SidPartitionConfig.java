@@ -0,0 +1,61 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(SidPartitionConfig.PREFIX)
+public class SidPartitionConfig {
+
+    public static final String PREFIX = "sid.mapper.partition";
+
+    /**
+     * The number of identifiers to send to the SID service per request. If adaptive sizing is enabled, this is the
+     * initial partition size.
+     */
+    private int size = 50_000;
+
+    /**
+     * If enabled, the partition size is tuned from the observed latency of the SID service.
+     */
+    private boolean adaptive = true;
+
+    /**
+     * The smallest partition size that adaptive sizing may use.
+     */
+    private int minSize = 100;
+
+    /**
+     * The largest partition size that adaptive sizing may use. If not set, the initial partition size is used.
+     */
+    private int maxSize;
+
+    /**
+     * Requests that take longer than this make the partition size shrink, faster requests make it grow.
+     */
+    private Duration targetLatency = Duration.ofSeconds(10);
+
+    /**
+     * The maximum time to wait for the SID service to look up one partition. A partition that times out is retried
+     * like any other failed partition.
+     */
+    private Duration timeout = Duration.ofSeconds(120);
+
+    /**
+     * How many times to retry a partition that could not be looked up.
+     */
+    private int maxRetries = 2;
+
+    /**
+     * The delay before the first retry. The delay is doubled for each following retry.
+     */
+    private Duration retryBackoff = Duration.ofMillis(500);
+
+    /**
+     * How many times a partition that still fails after all retries may be split in halves and retried.
+     */
+    private int maxSplits = 2;
+
+}
@@ -0,0 +1,131 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.Flowable;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+
+import java.time.Duration;
+
+/**
+ * Decides how many identifiers the {@link SidMapper} and the {@link SidBatchCoalescer} send to the SID service per
+ * request, and how failed requests are retried.
+ *
+ * <p>The partition size is tuned from the observed latency of the requests to the SID service (see
+ * {@link #observe(int, Publisher)}): a request that completes within
+ * <code>sid.mapper.partition.target-latency</code> makes the partition size grow by a fixed step, while a slow or
+ * failed request makes it shrink by (at least) half. The partition size is shared by all requests, since they all
+ * talk to the same SID service.</p>
+ */
+@Singleton
+@Slf4j
+public class SidPartitionController {
+
+    private final SidPartitionConfig config;
+    private final int minSize;
+    private final int maxSize;
+    private final int step;
+    private volatile int partitionSize;
+
+    public SidPartitionController(SidPartitionConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.maxSize = Math.max(1, config.getMaxSize() > 0 ? config.getMaxSize() : config.getSize());
+        this.minSize = Math.clamp(config.getMinSize(), 1, maxSize);
+        this.step = Math.max(1, maxSize / 20);
+        this.partitionSize = Math.clamp(config.getSize(), minSize, maxSize);
+        Gauge.builder("sid.mapper.partition.size", this, SidPartitionController::partitionSize)
+                .description("Number of identifiers per SID-mapping request")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the number of identifiers to send in the next request
+     */
+    public int partitionSize() {
+        return partitionSize;
+    }
+
+    /**
+     * Record the outcome of a request to the SID service when it completes. Requests that the SID service rejected
+     * (e.g. not found) say nothing about its capacity, and are not recorded as failures.
+     *
+     * @param size    the number of identifiers in the request
+     * @param request the request
+     * @return the request, which records its outcome when subscribed to
+     */
+    public <T> Flowable<T> observe(int size, Publisher<T> request) {
+        return Flowable.defer(() -> {
+            final long start = System.nanoTime();
+            return Flowable.fromPublisher(request)
+                    .doOnNext(response -> onSuccess(size, Duration.ofNanos(System.nanoTime() - start)))
+                    .doOnError(e -> {
+                        if (SidMapper.isRetryable(e)) {
+                            onFailure();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Record a successful request.
+     *
+     * @param size    the number of identifiers in the request
+     * @param latency how long the request took
+     */
+    public synchronized void onSuccess(int size, Duration latency) {
+        if (!config.isAdaptive()) {
+            return;
+        }
+        final long target = config.getTargetLatency().toMillis();
+        final long elapsed = Math.max(1, latency.toMillis());
+        if (elapsed > target) {
+            // Shrink towards the size that the SID service handled within the target latency
+            update((int) Math.max(partitionSize / 2, Math.min(partitionSize, size * target / elapsed)));
+        } else if (size >= partitionSize / 2) {
+            // Only grow from requests that were close to the current size (the last partition is often smaller)
+            update(partitionSize + step);
+        }
+    }
+
+    /**
+     * Record a failed request.
+     */
+    public synchronized void onFailure() {
+        if (config.isAdaptive()) {
+            update(partitionSize / 2);
+        }
+    }
+
+    /**
+     * @param attempt the number of retries so far
+     * @return how long to wait before the next retry
+     */
+    public Duration backoff(int attempt) {
+        return config.getRetryBackoff().multipliedBy(1L << Math.min(attempt, 16));
+    }
+
+    /**
+     * @return how long to wait for the lookup of one partition
+     */
+    public Duration timeout() {
+        return config.getTimeout();
+    }
+
+    public int maxRetries() {
+        return config.getMaxRetries();
+    }
+
+    public int maxSplits() {
+        return config.getMaxSplits();
+    }
+
+    private void update(int size) {
+        final int newSize = Math.clamp(size, minSize, maxSize);
+        if (newSize != partitionSize) {
+            log.debug("Change SID-mapping partition size from {} to {}", partitionSize, newSize);
+            partitionSize = newSize;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Keeps the SID snapshots that are available from the {@link SidService}, so that snapshot dates can be validated
+ * without calling the SID service for every request.
+ *
+ * <p>The catalog is loaded on first use and refreshed every <code>sid.snapshots.refresh-interval</code>. If a refresh
+ * fails, the previous snapshots are kept until the next attempt.</p>
+ */
+@Singleton
+@Slf4j
+public class SidSnapshotCatalog {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    private final SidService sidService;
+    private volatile Snapshots snapshots;
+
+    public SidSnapshotCatalog(SidService sidService) {
+        this.sidService = sidService;
+    }
+
+    /**
+     * Validate a requested snapshot date against the available SID snapshots.
+     *
+     * @param requestedSnapshot the requested snapshot date (yyyy-MM-dd)
+     * @throws InvalidSidSnapshotDateException if the date is malformed or earlier than all available snapshots
+     */
+    public void validate(String requestedSnapshot) {
+        final Snapshots current = current();
+        final LocalDate requestedSnapshotDate;
+        try {
+            requestedSnapshotDate = LocalDate.from(FORMATTER.parse(requestedSnapshot));
+        } catch (DateTimeParseException e) {
+            throw new InvalidSidSnapshotDateException(String.format("Invalid snapshot date format. Valid dates are: %s",
+                    String.join(", ", current.items())));
+        }
+        if (current.dates().isEmpty() || requestedSnapshotDate.isBefore(current.dates().first())) {
+            throw new InvalidSidSnapshotDateException(String.format("Requested date is of an earlier date than all available SID dates. Valid dates are: %s",
+                    String.join(", ", current.items())));
+        }
+    }
+
+    /**
+     * Discard the cached snapshots, so that they are fetched again on next use.
+     */
+    public void invalidate() {
+        snapshots = null;
+    }
+
+    @Scheduled(fixedDelay = "${sid.snapshots.refresh-interval:10m}",
+            initialDelay = "${sid.snapshots.refresh-interval:10m}")
+    void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            final Snapshots previous = snapshots;
+            log.warn("Failed to refresh SID snapshots. Keeping the snapshots fetched at {}.",
+                    previous != null ? previous.fetchedAt() : "(none)", e);
+        }
+    }
+
+    private Snapshots current() {
+        final Snapshots current = snapshots;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            // Another thread may have fetched the snapshots while waiting for the lock
+            return snapshots != null ? snapshots : refresh();
+        }
+    }
+
+    private synchronized Snapshots refresh() {
+        SnapshotInfo snapshotInfo = SidMapper.ObservableSubscriber.subscribe(sidService.getSnapshots()).awaitResult()
+                .orElseThrow(() -> new RuntimeException("SID service did not respond"));
+        NavigableSet<LocalDate> dates = new TreeSet<>();
+        for (String snapshot : snapshotInfo.items()) {
+            try {
+                dates.add(LocalDate.from(FORMATTER.parse(snapshot)));
+            } catch (DateTimeParseException e) {
+                throw new RuntimeException("Invalid date format from SID service");
+            }
+        }
+        snapshots = new Snapshots(List.copyOf(snapshotInfo.items()),
+                Collections.unmodifiableNavigableSet(dates), Instant.now());
+        log.debug("Fetched {} SID snapshots", dates.size());
+        return snapshots;
+    }
+
+    /**
+     * @param items     the snapshots as returned by the SID service
+     * @param dates     the parsed snapshot dates
+     * @param fetchedAt when the snapshots were fetched
+     */
+    private record Snapshots(List<String> items, NavigableSet<LocalDate> dates, Instant fetchedAt) {
+    }
+}
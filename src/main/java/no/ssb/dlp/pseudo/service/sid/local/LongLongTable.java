@@ -0,0 +1,199 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * An open addressing hash table (linear probing) that maps <code>long</code> keys to <code>long</code> values.
+ *
+ * <p>Keys and values are stored next to each other in a single {@link MemorySegment}, either on the heap or off-heap.
+ * The key {@link SidKeyCodec#NONE} marks an empty slot and can not be used as a key. Lookups do not allocate.</p>
+ *
+ * <p>The table is not thread safe while it is being populated. Once populated it may be read concurrently.</p>
+ */
+final class LongLongTable {
+
+    static final long NO_VALUE = SidKeyCodec.NONE;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long SLOT_SIZE = 2 * Long.BYTES;
+
+    private final boolean offHeap;
+    private MemorySegment slots;
+    private long capacity;
+    private long mask;
+    private long size;
+
+    /**
+     * @param expectedSize the expected number of entries, used to avoid resizing while the table is populated
+     * @param offHeap      if true, the table is stored outside the Java heap
+     */
+    LongLongTable(long expectedSize, boolean offHeap) {
+        this.offHeap = offHeap;
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Wrap an existing, populated table.
+     *
+     * @param slots the slots of a table, as written by {@link #slots()}
+     * @param size  the number of entries of the table
+     */
+    LongLongTable(MemorySegment slots, long size) {
+        this.offHeap = slots.isNative();
+        this.slots = slots;
+        this.capacity = slots.byteSize() / SLOT_SIZE;
+        this.mask = capacity - 1;
+        this.size = size;
+        if (Long.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Table capacity must be a power of two, was " + capacity);
+        }
+    }
+
+    /**
+     * Associate a value with a key, replacing any previous value.
+     *
+     * @param key   the key, not {@link SidKeyCodec#NONE}
+     * @param value the value
+     */
+    void put(long key, long value) {
+        if (key == SidKeyCodec.NONE) {
+            throw new IllegalArgumentException("Invalid key");
+        }
+        if ((size + 1) * 4 > capacity * 3) {
+            resize(capacity * 2);
+        }
+        long slot = slotOf(key);
+        while (true) {
+            long k = keyAt(slot);
+            if (k == SidKeyCodec.NONE) {
+                setSlot(slot, key, value);
+                size++;
+                return;
+            } else if (k == key) {
+                setSlot(slot, key, value);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Get the value associated with a key.
+     *
+     * @param key the key
+     * @return the value, or {@link #NO_VALUE} if the key is not in the table
+     */
+    long get(long key) {
+        if (key == SidKeyCodec.NONE) {
+            return NO_VALUE;
+        }
+        long slot = slotOf(key);
+        while (true) {
+            long k = keyAt(slot);
+            if (k == key) {
+                return slots.getAtIndex(ValueLayout.JAVA_LONG, slot * 2 + 1);
+            } else if (k == SidKeyCodec.NONE) {
+                return NO_VALUE;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Remove a key and its value from the table, if present.
+     *
+     * @param key the key
+     */
+    void remove(long key) {
+        if (key == SidKeyCodec.NONE) {
+            return;
+        }
+        long hole = slotOf(key);
+        while (true) {
+            long k = keyAt(hole);
+            if (k == key) {
+                break;
+            } else if (k == SidKeyCodec.NONE) {
+                return;
+            }
+            hole = (hole + 1) & mask;
+        }
+        // Move later entries of the probe sequence into the emptied slot, so that lookups do not stop short of them
+        long slot = (hole + 1) & mask;
+        long k;
+        while ((k = keyAt(slot)) != SidKeyCodec.NONE) {
+            final long home = slotOf(k);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                setSlot(hole, k, slots.getAtIndex(ValueLayout.JAVA_LONG, slot * 2 + 1));
+                hole = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        setSlot(hole, SidKeyCodec.NONE, 0);
+        size--;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long byteSize() {
+        return slots.byteSize();
+    }
+
+    MemorySegment slots() {
+        return slots;
+    }
+
+    private long keyAt(long slot) {
+        return slots.getAtIndex(ValueLayout.JAVA_LONG, slot * 2);
+    }
+
+    private void setSlot(long slot, long key, long value) {
+        slots.setAtIndex(ValueLayout.JAVA_LONG, slot * 2, key);
+        slots.setAtIndex(ValueLayout.JAVA_LONG, slot * 2 + 1, value);
+    }
+
+    private long slotOf(long key) {
+        return mix(key) & mask;
+    }
+
+    private void allocate(long newCapacity) {
+        // Memory allocated by the automatic arena is zeroed, and released when the table is no longer reachable
+        this.slots = offHeap
+                ? Arena.ofAuto().allocate(newCapacity * SLOT_SIZE, Long.BYTES)
+                : MemorySegment.ofArray(new long[Math.toIntExact(newCapacity * 2)]);
+        this.capacity = newCapacity;
+        this.mask = newCapacity - 1;
+        this.size = 0;
+    }
+
+    private void resize(long newCapacity) {
+        final MemorySegment oldSlots = slots;
+        final long oldCapacity = capacity;
+        allocate(newCapacity);
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            long key = oldSlots.getAtIndex(ValueLayout.JAVA_LONG, slot * 2);
+            if (key != SidKeyCodec.NONE) {
+                put(key, oldSlots.getAtIndex(ValueLayout.JAVA_LONG, slot * 2 + 1));
+            }
+        }
+    }
+
+    private static long capacityFor(long expectedSize) {
+        long minCapacity = Math.max(MIN_CAPACITY, expectedSize * 4 / 3 + 1);
+        return Long.highestOneBit(minCapacity - 1) << 1;
+    }
+
+    // Finalization step of MurmurHash3, spreads the sequential bits of numeric ids over the whole table
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -6,87 +6,123 @@ import jakarta.inject.Singleton;
 import no.ssb.dlp.pseudo.service.sid.SidIndexUnavailableException;
 
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Serves SID lookups from the most recently published {@link SidIndex}.
+ *
+ * <p>A new index is built off to the side (see {@link #newIndex()}) and then published with a single reference swap,
+ * so lookups never see a partially loaded index. Each lookup reads the current generation once, and a replaced
+ * generation is released by the garbage collector when the last in-flight lookup using it has finished.</p>
+ */
 @Singleton
 @Requires(env = "local-sid")
 public class SidCache {
 
-    private final Map<String, String> fnrToCurrentSnr = new HashMap<>();
-    private final Map<String, String> snrToCurrentFnr = new HashMap<>();
+    // Batches of at least this size are looked up in parallel
+    private static final int PARALLEL_LOOKUP_THRESHOLD = 50_000;
 
-    private Instant lastUpdated;
-    private State state = State.NOT_INITIALIZED;
+    private final SidIndexConfig config;
+    private volatile Generation current;
 
-    public void clearAll() {
-        fnrToCurrentSnr.clear();
-        snrToCurrentFnr.clear();
-        state = State.NOT_INITIALIZED;
-        lastUpdated = Instant.now();
+    public SidCache(SidIndexConfig config) {
+        this.config = config;
+        // The placeholder is never populated, so keep it minimal rather than sized for the expected mappings
+        this.current = new Generation(new SidIndex(1, false), null, State.NOT_INITIALIZED);
     }
 
-    void register(SidItem sidItem, boolean hasMoreUpdates) {
-        fnrToCurrentSnr.put(sidItem.getFnr(), sidItem.getCurrentSnr());
-        snrToCurrentFnr.put(sidItem.getSnr(), sidItem.getCurrentFnr());
-
-        if (! hasMoreUpdates) {
-            markAsInitialized();
-        }
+    /**
+     * Create an empty index, to be populated and then published with {@link #publish(SidIndex)}.
+     */
+    public SidIndex newIndex() {
+        return new SidIndex(config.getExpectedSize(), config.isOffHeap());
     }
 
-    void markAsInitialized() {
-        lastUpdated = Instant.now();
-        state = State.INITIALIZED;
+    /**
+     * Replace the current index with a fully populated index.
+     *
+     * @param index the new index, which must not be modified after it has been published
+     */
+    public void publish(SidIndex index) {
+        current = new Generation(index, Instant.now(), State.INITIALIZED);
     }
 
     public Optional<String> getCurrentSnrForFnr(String fnr) {
-        String currentSnr = fnrToCurrentSnr.get(fnr);
+        final Generation generation = current;
+        String currentSnr = generation.index().getCurrentSnrForFnr(fnr);
         if (currentSnr == null) {
-            validateCacheReady();
+            validateCacheReady(generation);
         }
 
         return Optional.ofNullable(currentSnr);
     }
 
     public Optional<String> getCurrentFnrForSnr(String snr) {
-        String currentFnr = snrToCurrentFnr.get(snr);
+        final Generation generation = current;
+        String currentFnr = generation.index().getCurrentFnrForSnr(snr);
         if (currentFnr == null) {
-            validateCacheReady();
+            validateCacheReady(generation);
         }
 
         return Optional.ofNullable(currentFnr);
     }
-    public List<String> getCurrentSnrList(List<String> fnrs) {
-        return fnrToCurrentSnr.entrySet().stream()
-                .filter(entry -> fnrs.contains(entry.getKey()))
-                .map(Map.Entry::getValue)
-                .toList();
+
+    /**
+     * Look up the current snr of each of the given fnrs. Large batches are looked up in parallel.
+     *
+     * @param fnrs the fnrs to look up
+     * @return the current snrs, in the same order as the given fnrs, with null for fnrs that have no mapping
+     */
+    public List<String> getCurrentSnrs(List<String> fnrs) {
+        final Generation generation = current;
+        List<String> currentSnrs = generation.index()
+                .getCurrentSnrsForFnrs(fnrs, fnrs.size() >= PARALLEL_LOOKUP_THRESHOLD);
+        if (currentSnrs.contains(null)) {
+            validateCacheReady(generation);
+        }
+        return currentSnrs;
     }
-    public List<String> getCurrentFnrList(List<String> snrs) {
-        return snrToCurrentFnr.entrySet().stream()
-                .filter(entry -> snrs.contains(entry.getKey()))
-                .map(Map.Entry::getValue)
-                .toList();
+
+    /**
+     * Look up the current fnr of each of the given snrs. Large batches are looked up in parallel.
+     *
+     * @param snrs the snrs to look up
+     * @return the current fnrs, in the same order as the given snrs, with null for snrs that have no mapping
+     */
+    public List<String> getCurrentFnrs(List<String> snrs) {
+        final Generation generation = current;
+        List<String> currentFnrs = generation.index()
+                .getCurrentFnrsForSnrs(snrs, snrs.size() >= PARALLEL_LOOKUP_THRESHOLD);
+        if (currentFnrs.contains(null)) {
+            validateCacheReady(generation);
+        }
+        return currentFnrs;
     }
-    private void validateCacheReady() throws SidIndexUnavailableException {
-        if (state != State.INITIALIZED) {
-            throw new SidIndexUnavailableException("SID index is not currently available. Wait a minute and retry. State=" + state);
+
+    private static void validateCacheReady(Generation generation) throws SidIndexUnavailableException {
+        if (generation.state() != State.INITIALIZED) {
+            throw new SidIndexUnavailableException("SID index is not currently available. Wait a minute and retry. State=" + generation.state());
         }
     }
 
     public int size() {
-        return fnrToCurrentSnr.size();
+        return (int) current.index().size();
+    }
+
+    public long byteSize() {
+        return current.index().byteSize();
     }
 
     public Instant getLastUpdated() {
-        return lastUpdated;
+        return current.lastUpdated();
     }
 
     public State getState() {
-        return state;
+        return current.state();
+    }
+
+    private record Generation(SidIndex index, Instant lastUpdated, State state) {
     }
 
     public enum State {
@@ -1,9 +1,11 @@
 package no.ssb.dlp.pseudo.service.sid.local;
 
+import com.google.cloud.storage.Blob;
 import com.google.common.base.Stopwatch;
 import io.micronaut.context.annotation.Property;
 import io.micronaut.context.annotation.Requirements;
 import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.annotation.Nullable;
 import io.micronaut.objectstorage.googlecloud.GoogleCloudStorageEntry;
 import io.micronaut.objectstorage.googlecloud.GoogleCloudStorageOperations;
 import io.micronaut.runtime.event.annotation.EventListener;
@@ -14,7 +16,11 @@ import jakarta.inject.Singleton;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.apache.commons.lang3.time.DurationFormatUtils.formatDurationWords;
 
@@ -25,22 +31,26 @@ import static org.apache.commons.lang3.time.DurationFormatUtils.formatDurationWo
         @Requires(property = "micronaut.object-storage.gcp.sid.bucket")
 })
 public class SidCacheLoader {
-    private final SidReader sidReader;
+    private final SidFileParser sidFileParser;
     private final String sidFile;
     @Getter
     private final SidCache sidCache;
 
     private final GoogleCloudStorageOperations objectStorage;
+    private final SidIndexSnapshotStore snapshotStore;
+    private final AtomicBoolean reloading = new AtomicBoolean();
 
     // TODO: Check if we can omit this explicit constructor by annotating the fields instead?
-    public SidCacheLoader(SidReader sidReader,
+    public SidCacheLoader(SidFileParser sidFileParser,
                           @Property(name = "sid.mapping.filename") String sidFile,
                           @Named("sid") GoogleCloudStorageOperations objectStorage,
-                          SidCache sidCache) {
-        this.sidReader = sidReader;
+                          SidCache sidCache,
+                          @Nullable SidIndexSnapshotStore snapshotStore) {
+        this.sidFileParser = sidFileParser;
         this.sidFile = sidFile;
         this.objectStorage = objectStorage;
         this.sidCache = sidCache;
+        this.snapshotStore = snapshotStore;
     }
 
     @EventListener
@@ -49,32 +59,60 @@ public class SidCacheLoader {
         reloadSidData();
     }
 
+    /**
+     * Load the SID data into a new index, and replace the current index when the load has completed. Lookups keep
+     * using the current index while the new one is loaded.
+     */
     public void reloadSidData() {
-        log.info("Load SID data from GCS...");
-        GoogleCloudStorageEntry item = objectStorage.retrieve(sidFile)
-                .orElseThrow(() -> new SidCacheInitException("Unable to read SID mappings from " + sidFile));
-
-        Stopwatch stopwatch = Stopwatch.createStarted();
-        sidCache.clearAll();
-
-        sidReader.readSidsFromFile(item.getInputStream()).subscribe(
-                // onNext
-                sidItem -> sidCache.register(sidItem, true)
-                ,
-
-                // onError
-                e -> {
-                    throw new SidCacheInitException("Unable to read SID mappings from " + sidFile, e);
-                },
-
-                // onComplete
-                sidCache::markAsInitialized
-        );
-
-        log.info("Read %s sid mappings in %s".formatted(
-                sidCache.size(),
-                formatDurationWords(stopwatch.elapsed(TimeUnit.MILLISECONDS), true, true))
-        );
+        if (!reloading.compareAndSet(false, true)) {
+            log.info("SID data is already being loaded");
+            return;
+        }
+        try {
+            log.info("Load SID data from GCS...");
+            GoogleCloudStorageEntry item = objectStorage.retrieve(sidFile)
+                    .orElseThrow(() -> new SidCacheInitException("Unable to read SID mappings from " + sidFile));
+
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            final String sourceChecksum = sourceChecksum(item);
+            Optional<SidIndex> snapshot = snapshotStore == null || sourceChecksum == null
+                    ? Optional.empty()
+                    : snapshotStore.load(sourceChecksum);
+            if (snapshot.isPresent()) {
+                sidCache.publish(snapshot.get());
+                log.info("Mapped %s sid mappings from snapshot in %s".formatted(
+                        sidCache.size(),
+                        formatDurationWords(stopwatch.elapsed(TimeUnit.MILLISECONDS), true, true))
+                );
+                return;
+            }
+
+            SidIndex index = sidCache.newIndex();
+            try (InputStream inputStream = item.getInputStream()) {
+                sidFileParser.parse(inputStream, index);
+            } catch (IOException | RuntimeException e) {
+                throw new SidCacheInitException("Unable to read SID mappings from " + sidFile, e);
+            }
+            sidCache.publish(index);
+
+            log.info("Read %s sid mappings in %s".formatted(
+                    sidCache.size(),
+                    formatDurationWords(stopwatch.elapsed(TimeUnit.MILLISECONDS), true, true))
+            );
+            if (snapshotStore != null && sourceChecksum != null) {
+                snapshotStore.save(index, sourceChecksum);
+            }
+        } finally {
+            reloading.set(false);
+        }
+    }
+
+    /**
+     * The checksum of the SID mapping file, as reported by GCS.
+     */
+    private static String sourceChecksum(GoogleCloudStorageEntry item) {
+        Blob blob = item.getNativeEntry();
+        return blob.getMd5() != null ? blob.getMd5() : blob.getCrc32c();
     }
 
     public String getSource() {
@@ -0,0 +1,219 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses the fixed width SID mapping file provided by Team FREG directly into a {@link SidIndex}.
+ *
+ * <p>The file is read in newline aligned chunks, which are parsed in parallel. Only the fnr, fnr_naa, snr_utgatt and
+ * snr columns are sliced from each line (at the offsets given by {@link SidMappingFileField}) and encoded with
+ * {@link SidKeyCodec}, without creating intermediate objects per line. The parsed chunks are registered in the index
+ * in file order, so that later lines take precedence over earlier ones.</p>
+ */
+@Singleton
+public class SidFileParser {
+
+    private static final int[] COLUMN_START = new int[4];
+    private static final int[] COLUMN_END = new int[4];
+    private static final int FNR_COLUMN = 0;
+    private static final int CURRENT_FNR_COLUMN = 1;
+    private static final int SNR_COLUMN = 2;
+    private static final int CURRENT_SNR_COLUMN = 3;
+    // The mapping file uses '.' to denote an empty value
+    private static final String EMPTY_VALUE = ".";
+
+    static {
+        int offset = 0;
+        for (SidMappingFileField field : SidMappingFileField.values()) {
+            int column = switch (field) {
+                case FNR -> FNR_COLUMN;
+                case CURRENT_FNR -> CURRENT_FNR_COLUMN;
+                case SNR -> SNR_COLUMN;
+                case CURRENT_SNR -> CURRENT_SNR_COLUMN;
+                default -> -1;
+            };
+            if (column >= 0) {
+                COLUMN_START[column] = offset;
+                COLUMN_END[column] = offset + field.getLength();
+            }
+            offset += field.getLength();
+        }
+    }
+
+    private final int parallelism;
+    private final int chunkSize;
+
+    public SidFileParser(SidIndexConfig config) {
+        this.parallelism = Math.max(1, config.getLoadParallelism());
+        this.chunkSize = Math.max(1, config.getLoadChunkSize());
+    }
+
+    /**
+     * Parse a SID mapping file (including the header line) and register all mappings in the given index.
+     *
+     * @param inputStream the SID mapping file
+     * @param index       the index to populate
+     * @return the number of parsed lines
+     * @throws IOException if the file could not be read
+     */
+    public long parse(InputStream inputStream, SidIndex index) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("sid-parser-%d")
+                .setDaemon(true)
+                .build());
+        final Deque<Future<ParsedChunk>> pending = new ArrayDeque<>();
+        long lines = 0;
+        try {
+            byte[] buffer = new byte[chunkSize];
+            int filled = 0;
+            boolean firstChunk = true;
+            boolean eof = false;
+            while (!eof) {
+                int read = inputStream.readNBytes(buffer, filled, buffer.length - filled);
+                filled += read;
+                // readNBytes only returns fewer bytes than requested at the end of the stream
+                eof = filled < buffer.length;
+                int end = eof ? filled : lastNewline(buffer, filled) + 1;
+                if (end == 0) {
+                    // A single line does not fit in the buffer
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+                // The file is ASCII, so ISO-8859-1 gives a compact one byte per char String
+                final String chunk = new String(buffer, 0, end, StandardCharsets.ISO_8859_1);
+                final boolean skipHeader = firstChunk;
+                pending.add(executor.submit(() -> parseChunk(chunk, skipHeader)));
+                firstChunk = false;
+                System.arraycopy(buffer, end, buffer, 0, filled - end);
+                filled -= end;
+
+                // Bound the number of chunks held in memory
+                while (pending.size() >= parallelism * 2) {
+                    lines += register(pending.poll(), index);
+                }
+            }
+            while (!pending.isEmpty()) {
+                lines += register(pending.poll(), index);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return lines;
+    }
+
+    private static long register(Future<ParsedChunk> future, SidIndex index) throws IOException {
+        final ParsedChunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing SID mappings", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to parse SID mappings", e.getCause());
+        }
+        final long[] rows = chunk.rows();
+        for (int i = 0; i < chunk.rowCount() * 4; i += 4) {
+            index.register(rows[i + FNR_COLUMN], rows[i + CURRENT_SNR_COLUMN], rows[i + SNR_COLUMN],
+                    rows[i + CURRENT_FNR_COLUMN]);
+        }
+        for (String[] row : chunk.unpackedRows()) {
+            index.register(row[FNR_COLUMN], row[CURRENT_SNR_COLUMN], row[SNR_COLUMN], row[CURRENT_FNR_COLUMN]);
+        }
+        return chunk.rowCount() + chunk.unpackedRows().size();
+    }
+
+    static ParsedChunk parseChunk(String chunk, boolean skipHeader) {
+        long[] rows = new long[4 * 1024];
+        int rowCount = 0;
+        final List<String[]> unpackedRows = new ArrayList<>();
+        int pos = 0;
+        if (skipHeader) {
+            int eol = chunk.indexOf('\n');
+            pos = eol < 0 ? chunk.length() : eol + 1;
+        }
+        while (pos < chunk.length()) {
+            int eol = chunk.indexOf('\n', pos);
+            if (eol < 0) {
+                eol = chunk.length();
+            }
+            int lineEnd = eol > pos && chunk.charAt(eol - 1) == '\r' ? eol - 1 : eol;
+            if (lineEnd > pos) {
+                if (rows.length < (rowCount + 1) * 4) {
+                    rows = Arrays.copyOf(rows, rows.length * 2);
+                }
+                if (!parseLine(chunk, pos, lineEnd, rows, rowCount * 4)) {
+                    unpackedRows.add(sliceLine(chunk, pos, lineEnd));
+                } else {
+                    rowCount++;
+                }
+            }
+            pos = eol + 1;
+        }
+        return new ParsedChunk(rows, rowCount, unpackedRows);
+    }
+
+    /**
+     * Encode the columns of a line into <code>rows</code>.
+     *
+     * @return false if a non-empty column could not be encoded
+     */
+    private static boolean parseLine(String chunk, int lineStart, int lineEnd, long[] rows, int rowOffset) {
+        for (int column = 0; column < 4; column++) {
+            int start = Math.min(lineStart + COLUMN_START[column], lineEnd);
+            int end = Math.min(lineStart + COLUMN_END[column], lineEnd);
+            while (start < end && chunk.charAt(start) == ' ') {
+                start++;
+            }
+            while (end > start && chunk.charAt(end - 1) == ' ') {
+                end--;
+            }
+            if (start == end || (end - start == 1 && chunk.charAt(start) == '.')) {
+                rows[rowOffset + column] = SidKeyCodec.NONE;
+                continue;
+            }
+            long encoded = SidKeyCodec.encode(chunk, start, end);
+            if (encoded == SidKeyCodec.NONE) {
+                return false;
+            }
+            rows[rowOffset + column] = encoded;
+        }
+        return true;
+    }
+
+    private static String[] sliceLine(String chunk, int lineStart, int lineEnd) {
+        final String[] row = new String[4];
+        for (int column = 0; column < 4; column++) {
+            int start = Math.min(lineStart + COLUMN_START[column], lineEnd);
+            int end = Math.min(lineStart + COLUMN_END[column], lineEnd);
+            String value = chunk.substring(start, end).strip();
+            row[column] = value.isEmpty() || value.equals(EMPTY_VALUE) ? null : value;
+        }
+        return row;
+    }
+
+    private static int lastNewline(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    record ParsedChunk(long[] rows, int rowCount, List<String[]> unpackedRows) {
+    }
+}
@@ -0,0 +1,171 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Maps fnr to current snr and snr to current fnr.
+ *
+ * <p>Since fnr and snr are short, fixed format identifiers they are packed into <code>long</code>s (see
+ * {@link SidKeyCodec}) and stored in primitive hash tables, which only take a fraction of the memory of String based
+ * maps. The few mappings that can not be packed are kept in regular maps.</p>
+ *
+ * <p>The index is not thread safe while it is being populated. Once populated it may be read concurrently.</p>
+ */
+public class SidIndex {
+
+    private final LongLongTable fnrToCurrentSnr;
+    private final LongLongTable snrToCurrentFnr;
+    private final Map<String, String> fnrToCurrentSnrOverflow;
+    private final Map<String, String> snrToCurrentFnrOverflow;
+
+    public SidIndex(long expectedSize, boolean offHeap) {
+        this(new LongLongTable(expectedSize, offHeap), new LongLongTable(expectedSize, offHeap),
+                new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Create an index from existing tables, e.g. read from a {@link SidIndexSnapshot}.
+     */
+    SidIndex(LongLongTable fnrToCurrentSnr, LongLongTable snrToCurrentFnr,
+             Map<String, String> fnrToCurrentSnrOverflow, Map<String, String> snrToCurrentFnrOverflow) {
+        this.fnrToCurrentSnr = fnrToCurrentSnr;
+        this.snrToCurrentFnr = snrToCurrentFnr;
+        this.fnrToCurrentSnrOverflow = fnrToCurrentSnrOverflow;
+        this.snrToCurrentFnrOverflow = snrToCurrentFnrOverflow;
+    }
+
+    void register(SidItem sidItem) {
+        register(sidItem.getFnr(), sidItem.getCurrentSnr(), sidItem.getSnr(), sidItem.getCurrentFnr());
+    }
+
+    void register(String fnr, String currentSnr, String snr, String currentFnr) {
+        put(fnrToCurrentSnr, fnrToCurrentSnrOverflow, fnr, currentSnr);
+        put(snrToCurrentFnr, snrToCurrentFnrOverflow, snr, currentFnr);
+    }
+
+    /**
+     * Register identifiers that have already been encoded with {@link SidKeyCodec}. Mappings where either side is
+     * {@link SidKeyCodec#NONE} are skipped.
+     */
+    void register(long fnr, long currentSnr, long snr, long currentFnr) {
+        if (fnr != SidKeyCodec.NONE && currentSnr != SidKeyCodec.NONE) {
+            put(fnrToCurrentSnr, fnrToCurrentSnrOverflow, fnr, currentSnr);
+        }
+        if (snr != SidKeyCodec.NONE && currentFnr != SidKeyCodec.NONE) {
+            put(snrToCurrentFnr, snrToCurrentFnrOverflow, snr, currentFnr);
+        }
+    }
+
+    public String getCurrentSnrForFnr(String fnr) {
+        return get(fnrToCurrentSnr, fnrToCurrentSnrOverflow, fnr);
+    }
+
+    public String getCurrentFnrForSnr(String snr) {
+        return get(snrToCurrentFnr, snrToCurrentFnrOverflow, snr);
+    }
+
+    /**
+     * Look up the current snr of each of the given fnrs.
+     *
+     * @param fnrs     the fnrs to look up
+     * @param parallel if true, the lookups are spread over the common fork join pool
+     * @return the current snrs, in the same order as the given fnrs, with null for fnrs that are not in the index
+     */
+    public List<String> getCurrentSnrsForFnrs(List<String> fnrs, boolean parallel) {
+        return lookupAll(fnrs, this::getCurrentSnrForFnr, parallel);
+    }
+
+    /**
+     * Look up the current fnr of each of the given snrs.
+     *
+     * @param snrs     the snrs to look up
+     * @param parallel if true, the lookups are spread over the common fork join pool
+     * @return the current fnrs, in the same order as the given snrs, with null for snrs that are not in the index
+     */
+    public List<String> getCurrentFnrsForSnrs(List<String> snrs, boolean parallel) {
+        return lookupAll(snrs, this::getCurrentFnrForSnr, parallel);
+    }
+
+    /**
+     * @return the number of fnr mappings
+     */
+    public long size() {
+        return fnrToCurrentSnr.size() + fnrToCurrentSnrOverflow.size();
+    }
+
+    /**
+     * @return the approximate number of bytes used by the primitive tables of the index
+     */
+    public long byteSize() {
+        return fnrToCurrentSnr.byteSize() + snrToCurrentFnr.byteSize();
+    }
+
+    LongLongTable fnrToCurrentSnr() {
+        return fnrToCurrentSnr;
+    }
+
+    LongLongTable snrToCurrentFnr() {
+        return snrToCurrentFnr;
+    }
+
+    Map<String, String> fnrToCurrentSnrOverflow() {
+        return fnrToCurrentSnrOverflow;
+    }
+
+    Map<String, String> snrToCurrentFnrOverflow() {
+        return snrToCurrentFnrOverflow;
+    }
+
+    private static List<String> lookupAll(List<String> keys, UnaryOperator<String> lookup, boolean parallel) {
+        // Copy to an array to get constant time access regardless of the list implementation
+        final String[] values = keys.toArray(String[]::new);
+        if (parallel) {
+            IntStream.range(0, values.length).parallel().forEach(i -> values[i] = lookup.apply(values[i]));
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = lookup.apply(values[i]);
+            }
+        }
+        return Arrays.asList(values);
+    }
+
+    /**
+     * A key is only kept in one of the table and the overflow map, so that the last registered mapping always wins.
+     */
+    private static void put(LongLongTable table, Map<String, String> overflow, String key, String value) {
+        if (key == null || value == null) {
+            return;
+        }
+        long encodedKey = SidKeyCodec.encode(key);
+        long encodedValue = SidKeyCodec.encode(value);
+        if (encodedKey != SidKeyCodec.NONE && encodedValue != SidKeyCodec.NONE) {
+            put(table, overflow, encodedKey, encodedValue);
+        } else {
+            overflow.put(key, value);
+            table.remove(encodedKey);
+        }
+    }
+
+    private static void put(LongLongTable table, Map<String, String> overflow, long key, long value) {
+        table.put(key, value);
+        if (!overflow.isEmpty()) {
+            overflow.remove(SidKeyCodec.decode(key));
+        }
+    }
+
+    private static String get(LongLongTable table, Map<String, String> overflow, String key) {
+        if (key == null) {
+            return null;
+        }
+        long value = table.get(SidKeyCodec.encode(key));
+        if (value != LongLongTable.NO_VALUE) {
+            return SidKeyCodec.decode(value);
+        }
+        return overflow.isEmpty() ? null : overflow.get(key);
+    }
+}
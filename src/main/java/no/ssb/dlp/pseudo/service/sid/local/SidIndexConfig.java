@@ -0,0 +1,44 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(SidIndexConfig.PREFIX)
+public class SidIndexConfig {
+
+    public static final String PREFIX = "sid.index";
+
+    /**
+     * Name of the SID index snapshot in the SID bucket. If not set, no snapshots are written or read, and the index is
+     * always built from the SID mapping file.
+     */
+    private String filename;
+
+    /**
+     * Local directory where the SID index snapshot is written to and memory-mapped from.
+     */
+    private String localDirectory = System.getProperty("java.io.tmpdir");
+
+    /**
+     * If true, the SID index is stored outside the Java heap.
+     */
+    private boolean offHeap = false;
+
+    /**
+     * The expected number of SID mappings. The index grows beyond this if needed, but sizing it up front avoids
+     * rehashing while the mappings are loaded.
+     */
+    private long expectedSize = 1_000_000;
+
+    /**
+     * The number of threads used to parse the SID mapping file.
+     */
+    private int loadParallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The approximate number of bytes of the SID mapping file that are parsed as one unit of work.
+     */
+    private int loadChunkSize = 8 * 1024 * 1024;
+
+}
@@ -0,0 +1,214 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Binary snapshot format of a {@link SidIndex}, which can be memory-mapped instead of being rebuilt from the SID
+ * mapping file.
+ *
+ * <pre>
+ * offset  size  content
+ *      0     8  magic ("SIDIDX01")
+ *      8     4  format version
+ *     16     8  number of fnr entries
+ *     24     8  number of snr entries
+ *     32     8  byte size of the fnr table
+ *     40     8  byte size of the snr table
+ *     48     8  byte size of the overflow section
+ *     56     4  byte size of the source checksum
+ *     64    64  source checksum (UTF-8)
+ *    128        fnr table, snr table and overflow section
+ * </pre>
+ *
+ * <p>The tables are stored in native byte order, exactly as they are laid out in memory. The magic number is also
+ * written in native byte order, so that a snapshot written on a machine with another byte order is rejected.</p>
+ */
+@Slf4j
+final class SidIndexSnapshot {
+
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 128;
+
+    private static final long MAGIC = 0x5349444944583031L;
+    private static final int CHECKSUM_OFFSET = 64;
+    private static final int MAX_CHECKSUM_LENGTH = HEADER_SIZE - CHECKSUM_OFFSET;
+
+    private SidIndexSnapshot() {
+    }
+
+    /**
+     * Write a snapshot of an index.
+     *
+     * @param index          the index
+     * @param sourceChecksum checksum of the SID mapping file that the index was built from
+     * @param path           the file to write, which is replaced if it exists
+     */
+    static void write(SidIndex index, String sourceChecksum, Path path) throws IOException {
+        final byte[] checksum = sourceChecksum.getBytes(StandardCharsets.UTF_8);
+        if (checksum.length > MAX_CHECKSUM_LENGTH) {
+            throw new IllegalArgumentException("Source checksum is too long: " + sourceChecksum);
+        }
+        final byte[] overflow = encodeOverflow(index);
+        final LongLongTable fnrTable = index.fnrToCurrentSnr();
+        final LongLongTable snrTable = index.snrToCurrentFnr();
+        final long fnrOffset = HEADER_SIZE;
+        final long snrOffset = fnrOffset + fnrTable.byteSize();
+        final long overflowOffset = snrOffset + snrTable.byteSize();
+
+        Files.deleteIfExists(path);
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             Arena arena = Arena.ofConfined()) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0, overflowOffset + overflow.length, arena);
+            file.set(ValueLayout.JAVA_LONG, 0, MAGIC);
+            file.set(ValueLayout.JAVA_INT, 8, FORMAT_VERSION);
+            file.set(ValueLayout.JAVA_LONG, 16, fnrTable.size());
+            file.set(ValueLayout.JAVA_LONG, 24, snrTable.size());
+            file.set(ValueLayout.JAVA_LONG, 32, fnrTable.byteSize());
+            file.set(ValueLayout.JAVA_LONG, 40, snrTable.byteSize());
+            file.set(ValueLayout.JAVA_LONG, 48, overflow.length);
+            file.set(ValueLayout.JAVA_INT, 56, checksum.length);
+            MemorySegment.copy(MemorySegment.ofArray(checksum), 0, file, CHECKSUM_OFFSET, checksum.length);
+            MemorySegment.copy(fnrTable.slots(), 0, file, fnrOffset, fnrTable.byteSize());
+            MemorySegment.copy(snrTable.slots(), 0, file, snrOffset, snrTable.byteSize());
+            MemorySegment.copy(MemorySegment.ofArray(overflow), 0, file, overflowOffset, overflow.length);
+            file.force();
+        }
+    }
+
+    /**
+     * Get the source checksum of a snapshot.
+     *
+     * @param path the snapshot file
+     * @return the source checksum, or empty if the file does not exist or is not a valid snapshot
+     */
+    static Optional<String> readSourceChecksum(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             Arena arena = Arena.ofConfined()) {
+            if (channel.size() < HEADER_SIZE) {
+                return Optional.empty();
+            }
+            return readSourceChecksum(channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE, arena));
+        }
+    }
+
+    /**
+     * Get the source checksum from the header of a snapshot, e.g. read from the start of a remote snapshot.
+     *
+     * @param header the first {@link #HEADER_SIZE} bytes of the snapshot
+     * @return the source checksum, or empty if the header is not the header of a valid snapshot
+     */
+    static Optional<String> readSourceChecksum(byte[] header) {
+        if (header.length < HEADER_SIZE) {
+            return Optional.empty();
+        }
+        // Copy to a long-aligned segment, since the header fields are read as aligned values
+        final MemorySegment aligned = MemorySegment.ofArray(new long[HEADER_SIZE / Long.BYTES]);
+        MemorySegment.copy(MemorySegment.ofArray(header), 0, aligned, 0, HEADER_SIZE);
+        return readSourceChecksum(aligned);
+    }
+
+    /**
+     * Memory-map a snapshot. The mapping is released when the returned index is no longer reachable.
+     *
+     * @param path           the snapshot file
+     * @param sourceChecksum checksum of the current SID mapping file
+     * @return the index, or empty if the file does not exist, is not a valid snapshot or was built from another
+     * SID mapping file
+     */
+    static Optional<SidIndex> read(Path path, String sourceChecksum) throws IOException {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return Optional.empty();
+            }
+            // The mapping outlives the channel
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto());
+            Optional<String> checksum = readSourceChecksum(file);
+            if (checksum.isEmpty() || !checksum.get().equals(sourceChecksum)) {
+                log.info("SID index snapshot {} does not match the SID mapping file", path);
+                return Optional.empty();
+            }
+            final long fnrSize = file.get(ValueLayout.JAVA_LONG, 16);
+            final long snrSize = file.get(ValueLayout.JAVA_LONG, 24);
+            final long fnrBytes = file.get(ValueLayout.JAVA_LONG, 32);
+            final long snrBytes = file.get(ValueLayout.JAVA_LONG, 40);
+            final long overflowBytes = file.get(ValueLayout.JAVA_LONG, 48);
+            if (HEADER_SIZE + fnrBytes + snrBytes + overflowBytes != file.byteSize()) {
+                log.warn("SID index snapshot {} is truncated", path);
+                return Optional.empty();
+            }
+            final Map<String, String> fnrOverflow = new HashMap<>();
+            final Map<String, String> snrOverflow = new HashMap<>();
+            decodeOverflow(file.asSlice(HEADER_SIZE + fnrBytes + snrBytes, overflowBytes)
+                    .toArray(ValueLayout.JAVA_BYTE), fnrOverflow, snrOverflow);
+            return Optional.of(new SidIndex(
+                    new LongLongTable(file.asSlice(HEADER_SIZE, fnrBytes), fnrSize),
+                    new LongLongTable(file.asSlice(HEADER_SIZE + fnrBytes, snrBytes), snrSize),
+                    fnrOverflow, snrOverflow));
+        }
+    }
+
+    private static Optional<String> readSourceChecksum(MemorySegment header) {
+        if (header.get(ValueLayout.JAVA_LONG, 0) != MAGIC
+                || header.get(ValueLayout.JAVA_INT, 8) != FORMAT_VERSION) {
+            return Optional.empty();
+        }
+        int length = header.get(ValueLayout.JAVA_INT, 56);
+        if (length < 0 || length > MAX_CHECKSUM_LENGTH) {
+            return Optional.empty();
+        }
+        return Optional.of(new String(header.asSlice(CHECKSUM_OFFSET, length).toArray(ValueLayout.JAVA_BYTE),
+                StandardCharsets.UTF_8));
+    }
+
+    private static byte[] encodeOverflow(SidIndex index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (Map<String, String> overflow : List.of(index.fnrToCurrentSnrOverflow(),
+                    index.snrToCurrentFnrOverflow())) {
+                out.writeInt(overflow.size());
+                for (Map.Entry<String, String> entry : overflow.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void decodeOverflow(byte[] bytes, Map<String, String> fnrOverflow,
+                                       Map<String, String> snrOverflow) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            for (Map<String, String> overflow : List.of(fnrOverflow, snrOverflow)) {
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    overflow.put(in.readUTF(), in.readUTF());
+                }
+            }
+        }
+    }
+}
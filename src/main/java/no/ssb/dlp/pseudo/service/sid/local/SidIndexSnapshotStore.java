@@ -0,0 +1,125 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import io.micronaut.context.annotation.Requirements;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.objectstorage.googlecloud.GoogleCloudStorageEntry;
+import io.micronaut.objectstorage.googlecloud.GoogleCloudStorageOperations;
+import io.micronaut.objectstorage.request.UploadRequest;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Keeps {@link SidIndexSnapshot}s of the SID index, so that a restarted instance can memory-map the index instead
+ * of downloading and parsing the SID mapping file.
+ *
+ * <p>The snapshot is stored in the local directory <code>sid.index.local-directory</code>, and is also uploaded to
+ * the SID bucket as <code>sid.index.filename</code>, so that new instances can fetch it. A snapshot is only used if
+ * it was built from the current version of the SID mapping file.</p>
+ */
+@Singleton
+@Slf4j
+@Requirements({
+        @Requires(env = "local-sid"),
+        @Requires(property = "micronaut.object-storage.gcp.sid.bucket"),
+        @Requires(property = SidIndexConfig.PREFIX + ".filename")
+})
+public class SidIndexSnapshotStore {
+
+    private final String snapshotKey;
+    private final Path localSnapshot;
+    private final GoogleCloudStorageOperations objectStorage;
+
+    public SidIndexSnapshotStore(SidIndexConfig config,
+                                 @Named("sid") GoogleCloudStorageOperations objectStorage) {
+        this.snapshotKey = config.getFilename();
+        this.localSnapshot = Path.of(config.getLocalDirectory()).resolve(Path.of(snapshotKey).getFileName());
+        this.objectStorage = objectStorage;
+    }
+
+    /**
+     * Load the snapshot of the index that was built from a given SID mapping file, if one exists.
+     *
+     * @param sourceChecksum checksum of the SID mapping file
+     * @return the memory-mapped index, or empty if there is no matching snapshot
+     */
+    public Optional<SidIndex> load(String sourceChecksum) {
+        try {
+            if (!SidIndexSnapshot.readSourceChecksum(localSnapshot).filter(sourceChecksum::equals).isPresent()
+                    && !download(sourceChecksum)) {
+                return Optional.empty();
+            }
+            return SidIndexSnapshot.read(localSnapshot, sourceChecksum);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to load SID index snapshot", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Write a snapshot of the index and upload it to the SID bucket. Failures are logged, since the index can always
+     * be rebuilt from the SID mapping file.
+     *
+     * @param index          the index
+     * @param sourceChecksum checksum of the SID mapping file that the index was built from
+     */
+    public void save(SidIndex index, String sourceChecksum) {
+        try {
+            Files.createDirectories(localSnapshot.getParent());
+            Path tempFile = Files.createTempFile(localSnapshot.getParent(), "sid-index", ".tmp");
+            try {
+                SidIndexSnapshot.write(index, sourceChecksum, tempFile);
+                Files.move(tempFile, localSnapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            Path prefix = Path.of(snapshotKey).getParent();
+            objectStorage.upload(prefix == null
+                    ? UploadRequest.fromPath(localSnapshot)
+                    : UploadRequest.fromPath(localSnapshot, prefix.toString()));
+            log.info("Saved SID index snapshot {} ({} bytes)", snapshotKey, Files.size(localSnapshot));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to save SID index snapshot", e);
+        }
+    }
+
+    /**
+     * Download the remote snapshot, if it was built from the given SID mapping file. The header of the remote snapshot
+     * is checked first, so that a snapshot of another SID mapping file is not downloaded in full.
+     *
+     * @return true if the snapshot was downloaded
+     */
+    private boolean download(String sourceChecksum) throws IOException {
+        Optional<GoogleCloudStorageEntry> entry = objectStorage.retrieve(snapshotKey);
+        if (entry.isEmpty()) {
+            return false;
+        }
+        try (InputStream inputStream = entry.get().getInputStream()) {
+            final byte[] header = inputStream.readNBytes(SidIndexSnapshot.HEADER_SIZE);
+            if (!SidIndexSnapshot.readSourceChecksum(header).filter(sourceChecksum::equals).isPresent()) {
+                log.info("Remote SID index snapshot {} does not match the SID mapping file", snapshotKey);
+                return false;
+            }
+            Files.createDirectories(localSnapshot.getParent());
+            Path tempFile = Files.createTempFile(localSnapshot.getParent(), "sid-index", ".tmp");
+            try {
+                try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+                    outputStream.write(header);
+                    inputStream.transferTo(outputStream);
+                }
+                Files.move(tempFile, localSnapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import java.util.Arrays;
+
+/**
+ * Packs short identifiers such as fnr (11 digits) and snr (7 alphanumeric characters) into a single <code>long</code>,
+ * so that they can be stored in a {@link LongLongTable} instead of as String objects.
+ *
+ * <p>Numeric identifiers of up to 15 digits are stored as their numeric value, and other identifiers of up to 9
+ * characters from <code>[0-9A-Za-z_-]</code> are stored with 6 bits per character. The length is kept in both cases,
+ * so that leading zeros survive the round trip. An encoded identifier is never {@link #NONE}.</p>
+ */
+final class SidKeyCodec {
+
+    /**
+     * Denotes an identifier that is absent or that can not be packed.
+     */
+    static final long NONE = 0L;
+
+    private static final int MAX_NUMERIC_LENGTH = 15;
+    private static final int MAX_ALPHANUMERIC_LENGTH = 9;
+    private static final int LENGTH_SHIFT = 54;
+    private static final long NUMERIC_FLAG = 1L << 62;
+    private static final long ALPHANUMERIC_FLAG = 1L << 61;
+    private static final long PAYLOAD_MASK = (1L << LENGTH_SHIFT) - 1;
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz-_";
+    private static final byte[] CHAR_TO_CODE = new byte[128];
+
+    static {
+        Arrays.fill(CHAR_TO_CODE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            CHAR_TO_CODE[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private SidKeyCodec() {
+    }
+
+    /**
+     * Encode an identifier.
+     *
+     * @param id the identifier
+     * @return the encoded identifier, or {@link #NONE} if the identifier is null, empty or can not be packed
+     */
+    static long encode(CharSequence id) {
+        return id == null ? NONE : encode(id, 0, id.length());
+    }
+
+    /**
+     * Encode a part of a character sequence, e.g. a column of a line.
+     *
+     * @param s     the character sequence
+     * @param start the start index, inclusive
+     * @param end   the end index, exclusive
+     * @return the encoded identifier, or {@link #NONE} if the identifier is empty or can not be packed
+     */
+    static long encode(CharSequence s, int start, int end) {
+        final int length = end - start;
+        if (length <= 0) {
+            return NONE;
+        }
+        if (length <= MAX_NUMERIC_LENGTH) {
+            long value = 0;
+            int i = start;
+            for (; i < end; i++) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (i == end) {
+                return NUMERIC_FLAG | ((long) length << LENGTH_SHIFT) | value;
+            }
+        }
+        if (length <= MAX_ALPHANUMERIC_LENGTH) {
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                int code = c < 128 ? CHAR_TO_CODE[c] : -1;
+                if (code < 0) {
+                    return NONE;
+                }
+                value = (value << 6) | code;
+            }
+            return ALPHANUMERIC_FLAG | ((long) length << LENGTH_SHIFT) | value;
+        }
+        return NONE;
+    }
+
+    /**
+     * Decode an identifier.
+     *
+     * @param encoded an encoded identifier
+     * @return the identifier, or null if <code>encoded</code> is {@link #NONE}
+     */
+    static String decode(long encoded) {
+        if (encoded == NONE) {
+            return null;
+        }
+        final int length = (int) ((encoded >>> LENGTH_SHIFT) & 0x1F);
+        long value = encoded & PAYLOAD_MASK;
+        final char[] chars = new char[length];
+        if ((encoded & NUMERIC_FLAG) != 0) {
+            for (int i = length - 1; i >= 0; i--) {
+                chars[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        } else {
+            for (int i = length - 1; i >= 0; i--) {
+                chars[i] = ALPHABET.charAt((int) (value & 0x3F));
+                value >>>= 6;
+            }
+        }
+        return new String(chars);
+    }
+}
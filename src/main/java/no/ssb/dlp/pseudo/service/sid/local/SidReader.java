@@ -26,10 +26,11 @@ public class SidReader {
 
     public void readSidsFromFile(InputStream inputStream, SidCache sidCache) {
         FixedWidthRoutines routines = new FixedWidthRoutines(fixedWidthParserSettings());
+        SidIndex index = sidCache.newIndex();
         for (SidItem sidItem : routines.iterate(SidItem.class, inputStream, "UTF-8")) {
-            sidCache.register(sidItem, true);
+            index.register(sidItem);
         }
-        sidCache.markAsInitialized();
+        sidCache.publish(index);
     }
 
     @SneakyThrows
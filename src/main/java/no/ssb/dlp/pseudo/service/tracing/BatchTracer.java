@@ -0,0 +1,129 @@
+package no.ssb.dlp.pseudo.service.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Traces the transformation of values according to a {@link TracingGranularity}. Batches and values may be
+ * transformed on other threads than the one that created the tracer, so spans are explicitly parented to the context
+ * that was current when the tracer was created.
+ */
+public final class BatchTracer {
+
+    public static final String INSTRUMENTATION_NAME = "pseudo-service";
+    private static final BatchTracer NOOP = new BatchTracer(
+            OpenTelemetry.noop().getTracer(INSTRUMENTATION_NAME), TracingGranularity.NONE, Context.root());
+
+    private final Tracer tracer;
+    private final TracingGranularity granularity;
+    private final Context parent;
+
+    private BatchTracer(Tracer tracer, TracingGranularity granularity, Context parent) {
+        this.tracer = tracer;
+        this.granularity = granularity;
+        this.parent = parent;
+    }
+
+    /**
+     * Create a tracer whose spans are children of the current span (see {@link WithSpanContext#currentSpan()}).
+     */
+    public static BatchTracer of(Tracer tracer, TracingGranularity granularity) {
+        return granularity == TracingGranularity.NONE
+                ? NOOP
+                : new BatchTracer(tracer, granularity, Context.current().with(WithSpanContext.currentSpan()));
+    }
+
+    public static BatchTracer noop() {
+        return NOOP;
+    }
+
+    /**
+     * Trace the transformation of a batch of values, if the granularity is {@link TracingGranularity#BATCH}.
+     *
+     * @param spanName the name of the span
+     * @param size     the number of values in the batch
+     * @param batch    the transformation of the batch
+     * @return the result of the transformation
+     */
+    public <T> T traceBatch(String spanName, int size, Supplier<T> batch) {
+        return traceBatch(spanName, size, batch, Map::of);
+    }
+
+    /**
+     * Trace the transformation of a batch of values, if the granularity is {@link TracingGranularity#BATCH}.
+     *
+     * @param spanName the name of the span
+     * @param size     the number of values in the batch
+     * @param batch    the transformation of the batch
+     * @param failures the number of values of the batch that could not be transformed, by kind of failure. This is
+     *                 only called once the batch is done.
+     * @return the result of the transformation
+     */
+    public <T> T traceBatch(String spanName, int size, Supplier<T> batch, Supplier<Map<String, Long>> failures) {
+        if (granularity != TracingGranularity.BATCH) {
+            return batch.get();
+        }
+        final Span span = startSpan(spanName);
+        final long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            return batch.get();
+        } catch (RuntimeException e) {
+            failed = true;
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            final long durationNanos = System.nanoTime() - start;
+            long failureCount = 0;
+            for (Map.Entry<String, Long> failure : failures.get().entrySet()) {
+                span.setAttribute("batch.values.failures." + failure.getKey(), failure.getValue());
+                failureCount += failure.getValue();
+            }
+            span.setAttribute("batch.values.count", size);
+            span.setAttribute("batch.values.failures", failureCount);
+            span.setAttribute("batch.failed", failed);
+            span.setAttribute("batch.duration.ms", durationNanos / 1_000_000);
+            span.setAttribute("batch.throughput.values_per_second",
+                    durationNanos == 0 ? 0 : size * 1_000_000_000L / durationNanos);
+            span.end();
+        }
+    }
+
+    /**
+     * Trace the transformation of a single value, if the granularity is {@link TracingGranularity#VALUE}.
+     *
+     * @param spanName the name of the span
+     * @param value    the transformation of the value
+     * @return the result of the transformation
+     */
+    public <T> T traceValue(String spanName, Supplier<T> value) {
+        if (granularity != TracingGranularity.VALUE) {
+            return value.get();
+        }
+        final Span span = startSpan(spanName);
+        try {
+            return value.get();
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    private Span startSpan(String spanName) {
+        return tracer.spanBuilder(spanName)
+                .setParent(parent)
+                .setSpanKind(SpanKind.INTERNAL)
+                .startSpan();
+    }
+}
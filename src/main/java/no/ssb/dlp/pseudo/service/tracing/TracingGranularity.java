@@ -0,0 +1,20 @@
+package no.ssb.dlp.pseudo.service.tracing;
+
+/**
+ * Determines how fine-grained the tracing of value transformations should be.
+ */
+public enum TracingGranularity {
+    /**
+     * No spans are created for value transformations.
+     */
+    NONE,
+    /**
+     * One span is created per batch of values, carrying aggregated attributes such as the number of values, the
+     * number of values that could not be transformed (e.g. missing SIDs), duration and throughput.
+     */
+    BATCH,
+    /**
+     * One span is created per transformed value. This is expensive and should only be used for debugging.
+     */
+    VALUE
+}
@@ -0,0 +1,75 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.crypto.tink.Aead;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class AeadCacheFactoryTest {
+
+    private final AeadCacheConfig config = new AeadCacheConfig();
+    private final ExecutorService refreshExecutor = new AeadCacheFactory().aeadRefreshExecutor(config);
+    private final AtomicLong nanos = new AtomicLong();
+
+    @AfterEach
+    void tearDown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    @Test
+    void serveStaleAeadWhileRefreshing() throws InterruptedException {
+        Aead first = mock(Aead.class);
+        Aead second = mock(Aead.class);
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch refreshAllowed = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        AtomicReference<String> refreshThread = new AtomicReference<>();
+        LoadingCache<String, Aead> cache = AeadCacheFactory.newAeadCache(config, refreshExecutor, nanos::get, keyUri -> {
+            if (loads.getAndIncrement() == 0) {
+                return first;
+            }
+            refreshThread.set(Thread.currentThread().getName());
+            refreshStarted.countDown();
+            refreshAllowed.await();
+            return second;
+        });
+        assertThat(cache.get("kek")).isSameAs(first);
+
+        // Due for refresh, but not expired
+        nanos.addAndGet(config.getRefreshAfterWrite().plusMinutes(1).toNanos());
+        assertThat(cache.get("kek")).isSameAs(first);
+        assertThat(refreshStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(refreshThread.get()).startsWith("aead-refresh-");
+        assertThat(cache.get("kek")).isSameAs(first);
+
+        refreshAllowed.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.get("kek") != second && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(cache.get("kek")).isSameAs(second);
+    }
+
+    @Test
+    void rejectRefreshThatIsNotBeforeExpiry() {
+        config.setRefreshAfterWrite(Duration.ofMinutes(10));
+        config.setExpireAfterWrite(Duration.ofMinutes(10));
+
+        assertThatThrownBy(() -> AeadCacheFactory.newAeadCache(config, refreshExecutor, nanos::get,
+                keyUri -> mock(Aead.class)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("refresh-after-write");
+    }
+}
@@ -0,0 +1,36 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.crypto.tink.Aead;
+import no.ssb.dlp.pseudo.service.tink.KmsConfig;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class AeadCachePrewarmerTest {
+
+    @Test
+    void prewarmAllKeksAndSkipFailures() {
+        KmsConfig kmsConfig = new KmsConfig();
+        kmsConfig.setKeyUris(List.of(URI.create("gcp-kms://unavailable"), URI.create("gcp-kms://kek")));
+        List<String> loaded = new ArrayList<>();
+        LoadingCache<String, Aead> aeadCache = Caffeine.newBuilder().build(keyUri -> {
+            loaded.add(keyUri);
+            if (keyUri.contains("unavailable")) {
+                throw new IllegalStateException("KMS unavailable");
+            }
+            return mock(Aead.class);
+        });
+
+        new AeadCachePrewarmer(kmsConfig, aeadCache).prewarm(null);
+
+        assertThat(loaded).containsExactly("gcp-kms://unavailable", "gcp-kms://kek");
+        assertThat(aeadCache.asMap()).containsOnlyKeys("gcp-kms://kek");
+    }
+}
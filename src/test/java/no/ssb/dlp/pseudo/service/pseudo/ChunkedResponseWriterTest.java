@@ -0,0 +1,80 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.reactivex.Flowable;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChunkedResponseWriterTest {
+
+    @Test
+    void writeFragmentsInChunks() {
+        Flowable<String> response = PseudoResponseSerializer.serialize(
+                Flowable.just("\"a\"", "\"bø\"", "null", "\"c\""),
+                Flowable.just("{\"name\":\"x\"}"),
+                Flowable.empty(),
+                Flowable.just("{\"count\":3}"));
+
+        List<ByteBuf> chunks = ChunkedResponseWriter.write(response, UnpooledByteBufAllocator.DEFAULT, 16)
+                .toList().blockingGet();
+
+        StringBuilder json = new StringBuilder();
+        for (ByteBuf chunk : chunks) {
+            assertThat(chunk.isReadable()).isTrue();
+            json.append(chunk.toString(StandardCharsets.UTF_8));
+            chunk.release();
+        }
+        assertThat(chunks).hasSizeGreaterThan(1);
+        assertThat(json).hasToString("{\"data\": [\"a\",\"bø\",null,\"c\"], \"datadoc_metadata\": {\"variables\": "
+                + "[{\"name\":\"x\"}]}, \"metrics\": [{\"count\":3}], \"logs\": []}");
+    }
+
+    @Test
+    void releaseBufferOnError() {
+        List<ByteBuf> allocated = new ArrayList<>();
+        UnpooledByteBufAllocator allocator = trackingAllocator(allocated);
+
+        ChunkedResponseWriter.write(
+                        Flowable.just("\"a\"").concatWith(Flowable.error(new RuntimeException("failed"))),
+                        allocator, 1024)
+                .test()
+                .assertError(RuntimeException.class);
+
+        assertThat(allocated).hasSize(1);
+        assertThat(allocated.getFirst().refCnt()).isZero();
+    }
+
+    @Test
+    void releaseUndeliveredBuffersOnCancel() {
+        List<ByteBuf> allocated = new ArrayList<>();
+        UnpooledByteBufAllocator allocator = trackingAllocator(allocated);
+
+        // Nothing is requested, so completed buffers are held back until the response is cancelled
+        TestSubscriber<ByteBuf> subscriber = ChunkedResponseWriter.write(
+                        Flowable.just("\"a\"", "\"b\"", "\"c\""), allocator, 1)
+                .test(0);
+        assertThat(allocated).hasSizeGreaterThan(1);
+        subscriber.cancel();
+
+        subscriber.assertNoValues();
+        assertThat(allocated).allSatisfy(buffer -> assertThat(buffer.refCnt()).isZero());
+    }
+
+    private static UnpooledByteBufAllocator trackingAllocator(List<ByteBuf> allocated) {
+        return new UnpooledByteBufAllocator(false) {
+            @Override
+            public ByteBuf buffer(int initialCapacity) {
+                ByteBuf buffer = super.buffer(initialCapacity);
+                allocated.add(buffer);
+                return buffer;
+            }
+        };
+    }
+}
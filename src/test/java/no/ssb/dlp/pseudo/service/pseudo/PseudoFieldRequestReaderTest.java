@@ -0,0 +1,73 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PseudoFieldRequestReaderTest {
+
+    private static PseudoFieldRequestReader read(String json, int windowSize) throws IOException {
+        return PseudoFieldRequestReader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), windowSize);
+    }
+
+    @Test
+    void readEnvelopedRequestWithinWindow() throws IOException {
+        PseudoFieldRequestReader reader = read("""
+                {"request": {"name": "fnr", "values": ["a", null, "c"], "pattern": "**", "pseudoFunc": "daead(keyId=ssb-common-key-1)"}}
+                """, 10);
+        assertFalse(reader.isStreaming());
+        assertEquals("fnr", reader.getRequest().getName());
+        assertEquals("**", reader.getRequest().getPattern());
+        assertEquals("daead(keyId=ssb-common-key-1)", reader.getRequest().getPseudoFunc());
+        assertEquals(Arrays.asList("a", null, "c"), reader.getRequest().getValues());
+    }
+
+    @Test
+    void readRequestSubmittedAsString() throws IOException {
+        PseudoFieldRequestReader reader = read("""
+                {"request": "{\\"name\\": \\"fnr\\", \\"values\\": [\\"a\\", \\"b\\"]}"}
+                """, 10);
+        assertFalse(reader.isStreaming());
+        assertEquals("fnr", reader.getRequest().getName());
+        assertEquals(List.of("a", "b"), reader.getRequest().getValues());
+    }
+
+    @Test
+    void readStreamingRequestInWindows() throws IOException {
+        PseudoFieldRequestReader reader = read("""
+                {"request": {"name": "fnr", "pattern": "**", "pseudoFunc": "daead(keyId=ssb-common-key-1)", "keyset": null,
+                 "unknown": {"ignored": [1, 2]}, "values": ["a", "b", null, "d", "e"], "trailing": [1]}}
+                """, 2);
+        assertTrue(reader.isStreaming());
+        assertEquals("fnr", reader.getRequest().getName());
+        List<List<String>> windows = reader.valueWindows().toList().blockingGet();
+        assertEquals(List.of(List.of("a", "b"), Arrays.asList(null, "d"), List.of("e")), windows);
+    }
+
+    @Test
+    void readRequestWithPropertiesAfterValues() throws IOException {
+        PseudoFieldRequestReader reader = read("""
+                {"request": {"name": "fnr", "pattern": "**", "keyset": null, "values": ["a", "b", "c"],
+                 "pseudoFunc": "ff31(keyId=papis-common-key-1)"}}
+                """, 2);
+        assertFalse(reader.isStreaming());
+        assertEquals("ff31(keyId=papis-common-key-1)", reader.getRequest().getPseudoFunc());
+        assertEquals(List.of("a", "b", "c"), reader.getRequest().getValues());
+    }
+
+    @Test
+    void readInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> read("""
+                {"request": {"name": "fnr", "values": [["a"]]}}
+                """, 10));
+    }
+}
@@ -5,11 +5,11 @@ import io.reactivex.Completable;
 import io.reactivex.Flowable;
 import io.reactivex.observers.TestObserver;
 import no.ssb.dlp.pseudo.core.PseudoOperation;
-import no.ssb.dlp.pseudo.core.map.RecordMapProcessor;
 import no.ssb.dlp.pseudo.core.tink.model.EncryptedKeysetWrapper;
 import no.ssb.dlp.pseudo.service.pseudo.metadata.FieldMetadata;
 import no.ssb.dlp.pseudo.service.pseudo.metadata.PseudoMetadataProcessor;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -34,7 +34,7 @@ class PseudoFieldTest {
     private RecordMapProcessorFactory recordProcessorFactory;
 
     @Mock
-    private RecordMapProcessor<PseudoMetadataProcessor> recordMapProcessor;
+    private ColumnProcessor columnProcessor;
 
     @Test
     void UsesDefaultPseudoConfigWhenNoKeysetIsSupplied() {
@@ -64,8 +64,8 @@ class PseudoFieldTest {
     void setUpProcessorMocks() {
         MockitoAnnotations.openMocks(this);
         when(pseudoConfigSplitter.splitIfNecessary(any())).thenReturn(Collections.singletonList(new PseudoConfig()));
-        when(recordProcessorFactory.newPseudonymizeRecordProcessor(any(), anyString())).thenReturn(recordMapProcessor);
-        when(recordMapProcessor.getMetadataProcessor()).thenReturn(createPseudoMetadataProcessor());
+        when(recordProcessorFactory.newPseudonymizeColumnProcessor(any(), any(), anyString())).thenReturn(columnProcessor);
+        when(columnProcessor.getMetadataProcessor()).thenReturn(createPseudoMetadataProcessor());
     }
 
     private static PseudoMetadataProcessor createPseudoMetadataProcessor() {
@@ -88,12 +88,11 @@ class PseudoFieldTest {
         setUpProcessorMocks();
 
         //Preprocessor logic is covered in #preprocessorWithNullValues
-        when(recordMapProcessor.hasPreprocessors()).thenReturn(false);
+        when(columnProcessor.hasPreprocessors()).thenReturn(false);
 
-        when(recordMapProcessor.process(any())).thenAnswer(invocation -> {
-            Map<String, String> argument = invocation.getArgument(0);
-            String originalValue = argument.get("testField");
-            return Collections.singletonMap("testField", "processedValue " + originalValue);
+        when(columnProcessor.process(anyString())).thenAnswer(invocation -> {
+            String originalValue = invocation.getArgument(0);
+            return "processedValue " + originalValue;
         });
 
         PseudoField pseudoField = new PseudoField("testField", "**", null, null);
@@ -142,41 +141,68 @@ class PseudoFieldTest {
 
         JSONAssert.assertEquals(want, got, JSONCompareMode.STRICT);
 
-        // Verify that recordMapProcessor was called once for each non-null value
-        verify(recordMapProcessor, times(2)).process(any());
+        // Verify that columnProcessor was called once for each non-null value
+        verify(columnProcessor, times(2)).process(anyString());
+    }
+
+    @Test
+    void processInParallelPreservesOrder() throws JSONException {
+        setUpProcessorMocks();
+
+        when(columnProcessor.hasPreprocessors()).thenReturn(false);
+        when(columnProcessor.process(anyString())).thenAnswer(invocation -> "processed " + invocation.getArgument(0));
+
+        PseudoField pseudoField = new PseudoField("testField", "**", null, null);
+        pseudoField.setParallelism(4);
+        pseudoField.setChunkSize(2);
+        List<String> values = Arrays.asList("v1", "v2", null, "v4", "v5", "v6", "v7");
+
+        Flowable<String> result = pseudoField.process(pseudoConfigSplitter, recordProcessorFactory,
+                values, PseudoOperation.PSEUDONYMIZE, "dummy-correlation-id");
+        String got = String.join("", result.blockingIterable());
+
+        JSONAssert.assertEquals("""
+                ["processed v1", "processed v2", null, "processed v4", "processed v5", "processed v6", "processed v7"]
+                """, new JSONObject(got).getJSONArray("data").toString(), JSONCompareMode.STRICT);
+        verify(columnProcessor, times(6)).process(anyString());
+    }
+
+    @Test
+    void rejectInvalidChunking() {
+        PseudoField pseudoField = new PseudoField("testField", "**", null, null);
+        assertThrows(IllegalArgumentException.class, () -> pseudoField.setChunkSize(0));
+        assertThrows(IllegalArgumentException.class, () -> pseudoField.setParallelism(0));
     }
 
     @Test
     void preprocessorWithNullValues() {
         setUpProcessorMocks();
 
-        when(recordMapProcessor.hasPreprocessors()).thenReturn(true);
-        when(recordMapProcessor.init(any())).thenReturn(Collections.singletonMap("testField", "initializedValue"));
+        when(columnProcessor.hasPreprocessors()).thenReturn(true);
 
         PseudoField pseudoField = new PseudoField("testField", "**", null, null);
         List<String> values = Arrays.asList("v1", null, "v2");
 
-        Completable result = pseudoField.getPreprocessor(values, recordMapProcessor);
+        Completable result = pseudoField.getPreprocessor(values, columnProcessor);
 
         TestObserver<Void> testObserver = result.test();
         testObserver.assertComplete();
         testObserver.assertNoErrors();
 
-        // Verify that recordMapProcessor was called once for each non-null value
-        verify(recordMapProcessor, times(2)).init(any());
+        // Verify that columnProcessor was called once for each non-null value
+        verify(columnProcessor, times(2)).init(anyString());
     }
 
     @Test
     void nameWithIndices() {
         setUpProcessorMocks();
 
-        when(recordMapProcessor.hasPreprocessors()).thenReturn(true);
-        when(recordMapProcessor.init(any())).thenReturn(Collections.singletonMap("testField", "initializedValue"));
+        when(columnProcessor.hasPreprocessors()).thenReturn(true);
 
         PseudoField pseudoField = new PseudoField("path[9]/thing", "**/path/thing", null, null);
         List<String> values = Arrays.asList("v1", null, "v2");
 
-        Completable result = pseudoField.getPreprocessor(values, recordMapProcessor);
+        Completable result = pseudoField.getPreprocessor(values, columnProcessor);
 
         TestObserver<Void> testObserver = result.test();
         testObserver.assertComplete();
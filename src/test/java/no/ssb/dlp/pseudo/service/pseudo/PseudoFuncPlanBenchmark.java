@@ -0,0 +1,102 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.crypto.tink.Aead;
+import no.ssb.dapla.dlp.pseudo.func.PseudoFunc;
+import no.ssb.dapla.dlp.pseudo.func.map.MapFailureStrategy;
+import no.ssb.dapla.dlp.pseudo.func.map.MapFuncConfig;
+import no.ssb.dlp.pseudo.core.field.FieldDescriptor;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncDeclaration;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncNames;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncRule;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncs;
+import no.ssb.dlp.pseudo.service.pseudo.metadata.FieldMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static no.ssb.dlp.pseudo.core.func.PseudoFuncDeclaration.KEY_REFERENCE;
+
+/**
+ * Compares the per-value bookkeeping of a pseudo rule when the function declaration is parsed for every value
+ * (as before) and when it is taken from a precomputed {@link PseudoFuncPlan}. The crypto call itself is the same in
+ * both cases and is therefore left out.
+ *
+ * <p>Run with: <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=no.ssb.dlp.pseudo.service.pseudo.PseudoFuncPlanBenchmark</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PseudoFuncPlanBenchmark {
+
+    private PseudoFuncRule rule;
+    private PseudoFunc func;
+    private FieldDescriptor field;
+    private PseudoFuncPlan plan;
+
+    @Setup
+    public void setup() {
+        // A real pseudo function that needs no keys, so that the benchmark measures no mocking overhead
+        rule = new PseudoFuncRule("fnr", "**", "redact(placeholder=#)");
+        field = new FieldDescriptor("/fnr");
+        final LoadingCache<String, Aead> aeadCache = Caffeine.newBuilder().build(keyUri -> null);
+        func = new PseudoFuncs(List.of(rule), List.of(), List.of(), aeadCache)
+                .findPseudoFunc(field).orElseThrow().getFunc();
+        plan = new PseudoFuncPlan(rule, func);
+    }
+
+    @Benchmark
+    public void parsePerValue(Blackhole blackhole) {
+        PseudoFuncDeclaration funcDeclaration = PseudoFuncDeclaration.fromString(rule.getFunc());
+        final String funcName = funcDeclaration.getFuncName();
+        blackhole.consume(funcName.equals(PseudoFuncNames.MAP_SID) || funcName.equals(PseudoFuncNames.MAP_SID_FF31));
+        blackhole.consume(Optional.ofNullable(
+                funcDeclaration.getArgs().getOrDefault(MapFuncConfig.Param.MAP_FAILURE_STRATEGY, null)
+        ).map(String::valueOf).map(MapFailureStrategy::valueOf).orElse(MapFailureStrategy.RETURN_ORIGINAL));
+        final boolean isSidMapping = funcName.equals(PseudoFuncNames.MAP_SID)
+                || funcName.equals(PseudoFuncNames.MAP_SID_FF31)
+                || funcName.equals(PseudoFuncNames.MAP_SID_DAEAD);
+        blackhole.consume(FieldMetadata.builder()
+                .shortName(field.getName())
+                .dataElementPath(field.getPath().substring(1).replace('/', '.').replaceAll("\\[\\d*]", ""))
+                .encryptionKeyReference(funcDeclaration.getArgs().getOrDefault(KEY_REFERENCE, null))
+                .encryptionAlgorithm(func.getAlgorithm())
+                .stableIdentifierType(isSidMapping)
+                .encryptionAlgorithmParameters(funcDeclaration.getArgs())
+                .build());
+    }
+
+    @Benchmark
+    public void precomputedPlan(Blackhole blackhole) {
+        blackhole.consume(plan.isFpeLimited());
+        blackhole.consume(plan.getMapFailureStrategy());
+        blackhole.consume(plan.isSidMapping());
+        blackhole.consume(plan.metadataFor(field, null));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PseudoFuncPlanBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
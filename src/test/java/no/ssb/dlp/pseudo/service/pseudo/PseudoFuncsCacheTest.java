@@ -0,0 +1,43 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncRule;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncs;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+
+class PseudoFuncsCacheTest {
+
+    private final PseudoFuncsCache cache = new PseudoFuncsCache(new PseudoFuncsCacheConfig(), new SimpleMeterRegistry());
+
+    @Test
+    void reuseFuncsForSameRulesRegardlessOfName() {
+        PseudoFuncs first = cache.get(List.of(new PseudoFuncRule("a", "**", "daead(keyId=ssb-common-key-1)")), List.of(),
+                () -> mock(PseudoFuncs.class));
+        PseudoFuncs second = cache.get(List.of(new PseudoFuncRule("b", "**", "daead(keyId=ssb-common-key-1)")), List.of(),
+                () -> mock(PseudoFuncs.class));
+        assertSame(first, second);
+    }
+
+    @Test
+    void doNotReuseFuncsForDifferentRules() {
+        PseudoFuncs first = cache.get(List.of(new PseudoFuncRule("a", "**", "daead(keyId=ssb-common-key-1)")), List.of(),
+                () -> mock(PseudoFuncs.class));
+        PseudoFuncs second = cache.get(List.of(new PseudoFuncRule("a", "**", "ff31(keyId=ssb-common-key-1)")), List.of(),
+                () -> mock(PseudoFuncs.class));
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void doNotCacheSidMappingFuncs() {
+        List<PseudoFuncRule> rules = List.of(new PseudoFuncRule("a", "**", "map-sid(keyId=papis-common-key-1)"));
+        PseudoFuncs first = cache.get(rules, List.of(), () -> mock(PseudoFuncs.class));
+        PseudoFuncs second = cache.get(rules, List.of(), () -> mock(PseudoFuncs.class));
+        assertNotSame(first, second);
+    }
+}
@@ -4,6 +4,7 @@ import com.google.common.collect.Lists;
 import io.reactivex.Flowable;
 import no.ssb.dlp.pseudo.core.util.Json;
 import org.json.JSONException;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
@@ -72,4 +73,24 @@ class PseudoResponseSerializerTest {
                    }
                 """;
         JSONAssert.assertEquals(want, got, JSONCompareMode.STRICT);
-    }}
\ No newline at end of file
+    }
+
+    @Test
+    void testSerializeNdjson() {
+        Flowable<String> data = Flowable.just("\"a\"", "null", "\"b\"");
+        Flowable<String> metadata = Flowable.just("{\"short_name\":\"fnr\"}");
+        Flowable<String> logs = Flowable.just("\"Log line 1\"");
+        Flowable<String> metrics = Flowable.just("{\"NULL_VALUE\":1}");
+
+        String got = String.join("", Lists.newArrayList(
+                PseudoResponseSerializer.serializeNdjson(data, metadata, logs, metrics, 2).blockingIterable()));
+
+        Assertions.assertEquals("""
+                {"data": ["a",null]}
+                {"data": ["b"]}
+                {"datadoc_metadata": {"variables": [{"short_name":"fnr"}]}}
+                {"metrics": [{"NULL_VALUE":1}]}
+                {"logs": ["Log line 1"]}
+                """, got);
+    }
+}
@@ -0,0 +1,103 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.context.event.ApplicationEventPublisher;
+import no.ssb.dlp.pseudo.core.PseudoSecret;
+import no.ssb.dlp.pseudo.service.secrets.SecretService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PseudoSecretsTest {
+
+    @Mock
+    private SecretService secretService;
+    @Mock
+    private ApplicationEventPublisher<PseudoSecrets.PseudoSecretsRefreshedEvent> eventPublisher;
+
+    private PseudoSecret configuredSecret;
+    private SimpleMeterRegistry meterRegistry;
+    private PseudoSecrets pseudoSecrets;
+
+    @BeforeEach
+    void setUp() {
+        configuredSecret = new PseudoSecret();
+        configuredSecret.setId("some-secret");
+        configuredSecret.setVersion("1");
+        meterRegistry = new SimpleMeterRegistry();
+        pseudoSecrets = new PseudoSecrets(secretService, Map.of("secret1", configuredSecret), eventPublisher,
+                meterRegistry);
+    }
+
+    @Test
+    void resolveSecretsOnceWithoutModifyingConfiguredSecrets() {
+        when(secretService.getSecret("some-secret", "1")).thenReturn("key".getBytes(StandardCharsets.UTF_8));
+
+        List<PseudoSecret> secrets = pseudoSecrets.resolve();
+
+        assertEquals(1, secrets.size());
+        assertEquals("secret1", secrets.get(0).getName());
+        assertEquals("AES256", secrets.get(0).getType());
+        assertSame(secrets, pseudoSecrets.resolve());
+        verify(secretService, times(1)).getSecret("some-secret", "1");
+        assertNull(configuredSecret.getContent());
+        assertNull(configuredSecret.getName());
+    }
+
+    @Test
+    void publishEventWhenRefreshedSecretsHaveChanged() {
+        when(secretService.getSecret("some-secret", "1"))
+                .thenReturn("key".getBytes(StandardCharsets.UTF_8))
+                .thenReturn("key".getBytes(StandardCharsets.UTF_8))
+                .thenReturn("rotated".getBytes(StandardCharsets.UTF_8));
+
+        pseudoSecrets.refresh();
+        pseudoSecrets.refresh();
+        verify(eventPublisher, never()).publishEvent(any());
+
+        pseudoSecrets.refresh();
+        verify(eventPublisher, times(1)).publishEvent(any());
+    }
+
+    @Test
+    void keepPreviousSnapshotWhenScheduledRefreshFails() {
+        when(secretService.getSecret("some-secret", "1"))
+                .thenReturn("key".getBytes(StandardCharsets.UTF_8))
+                .thenThrow(new RuntimeException("Secret Manager unavailable"));
+
+        List<PseudoSecret> secrets = pseudoSecrets.resolve();
+        pseudoSecrets.scheduledRefresh();
+
+        assertSame(secrets, pseudoSecrets.resolve());
+        assertEquals(1.0, meterRegistry.get("pseudo.secrets.refresh.failures").counter().count());
+    }
+
+    @Test
+    void resolveLazilyWhenRefreshFailsAtStartup() {
+        when(secretService.getSecret("some-secret", "1"))
+                .thenThrow(new RuntimeException("Secret Manager unavailable"))
+                .thenReturn("key".getBytes(StandardCharsets.UTF_8));
+
+        pseudoSecrets.onStartup(null);
+        assertEquals(1.0, meterRegistry.get("pseudo.secrets.refresh.failures").counter().count());
+
+        assertEquals(1, pseudoSecrets.resolve().size());
+        verify(secretService, times(2)).getSecret("some-secret", "1");
+    }
+}
@@ -0,0 +1,54 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.crypto.tink.Aead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.Flowable;
+import no.ssb.dlp.pseudo.core.func.PseudoFuncRule;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class RecordMapProcessorFactoryTest {
+
+    @SuppressWarnings("unchecked")
+    private final RecordMapProcessorFactory factory = new RecordMapProcessorFactory(mock(PseudoSecrets.class),
+            mock(LoadingCache.class), new PseudoFuncsCache(new PseudoFuncsCacheConfig(), new SimpleMeterRegistry()));
+
+    private static PseudoConfig redactConfig(String pattern) {
+        PseudoConfig pseudoConfig = new PseudoConfig();
+        pseudoConfig.getRules().add(new PseudoFuncRule("redact", pattern, "redact(placeholder=#)"));
+        return pseudoConfig;
+    }
+
+    @Test
+    void applyMatchingRuleToColumn() {
+        ColumnProcessor processor = factory.newPseudonymizeColumnProcessor(List.of(redactConfig("**/fnr")), "fnr",
+                "correlation-id");
+
+        assertThat(processor.hasPreprocessors()).isTrue();
+        assertThat(processor.process("11854898347")).isEqualTo("#");
+        assertThat(processor.process(null)).isNull();
+
+        processor.getMetadataProcessor().onCompleteAll();
+        List<String> metadata = Flowable.fromPublisher(processor.getMetadataProcessor().getMetadata())
+                .toList().blockingGet();
+        assertThat(metadata).singleElement().asString().contains("\"fnr\"");
+    }
+
+    @Test
+    void keepValuesWhenNoRuleMatches() {
+        ColumnProcessor processor = factory.newPseudonymizeColumnProcessor(List.of(redactConfig("**/fnr")), "name",
+                "correlation-id");
+
+        assertThat(processor.hasPreprocessors()).isFalse();
+        assertThat(processor.process("Ola Nordmann")).isEqualTo("Ola Nordmann");
+
+        processor.getMetadataProcessor().onCompleteAll();
+        assertThat(Flowable.fromPublisher(processor.getMetadataProcessor().getMetadata()).toList().blockingGet())
+                .isEmpty();
+    }
+}
@@ -2,7 +2,6 @@ package no.ssb.dlp.pseudo.service.pseudo;
 
 import com.google.common.collect.Lists;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
-import no.ssb.dlp.pseudo.core.map.RecordMapProcessor;
 import no.ssb.dlp.pseudo.service.pseudo.metadata.FieldMetadata;
 import no.ssb.dlp.pseudo.service.pseudo.metadata.PseudoMetadataProcessor;
 import org.json.JSONException;
@@ -29,12 +28,12 @@ class RepseudoFieldTest {
     private RecordMapProcessorFactory recordProcessorFactory;
 
     @Mock
-    private RecordMapProcessor<PseudoMetadataProcessor> recordMapProcessor;
+    private ColumnProcessor columnProcessor;
     void setUpProcessorMocks() {
         MockitoAnnotations.openMocks(this);
         when(pseudoConfigSplitter.splitIfNecessary(any())).thenReturn(Collections.singletonList(new PseudoConfig()));
-        when(recordProcessorFactory.newRepseudonymizeRecordProcessor(any(), any(), anyString())).thenReturn(recordMapProcessor);
-        when(recordMapProcessor.getMetadataProcessor()).thenReturn(createPseudoMetadataProcessor());
+        when(recordProcessorFactory.newRepseudonymizeColumnProcessor(any(), any(), any(), anyString())).thenReturn(columnProcessor);
+        when(columnProcessor.getMetadataProcessor()).thenReturn(createPseudoMetadataProcessor());
     }
 
     private static PseudoMetadataProcessor createPseudoMetadataProcessor() {
@@ -56,12 +55,11 @@ class RepseudoFieldTest {
         setUpProcessorMocks();
 
         //Preprocessor logic is covered in #preprocessorWithNullValues
-        when(recordMapProcessor.hasPreprocessors()).thenReturn(false);
+        when(columnProcessor.hasPreprocessors()).thenReturn(false);
 
-        when(recordMapProcessor.process(any())).thenAnswer(invocation -> {
-            Map<String, String> argument = invocation.getArgument(0);
-            String originalValue = argument.get("testField");
-            return Collections.singletonMap("testField", "processedValue " + originalValue);
+        when(columnProcessor.process(anyString())).thenAnswer(invocation -> {
+            String originalValue = invocation.getArgument(0);
+            return "processedValue " + originalValue;
         });
 
         PseudoField sourcePseudoField = new PseudoField("testField", "**", null, null);
@@ -109,7 +107,7 @@ class RepseudoFieldTest {
 
         JSONAssert.assertEquals(want, got, JSONCompareMode.STRICT);
 
-        // Verify that recordMapProcessor was called once for each non-null value
-        verify(recordMapProcessor, times(2)).process(any());
+        // Verify that columnProcessor was called once for each non-null value
+        verify(columnProcessor, times(2)).process(anyString());
     }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package no.ssb.dlp.pseudo.service.pseudo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseFormatTest {
+
+    @Test
+    void chooseNdjsonOnlyIfPreferred() {
+        assertThat(ResponseFormat.fromAccept(null)).isEqualTo(ResponseFormat.JSON);
+        assertThat(ResponseFormat.fromAccept("application/x-ndjson")).isEqualTo(ResponseFormat.NDJSON);
+        assertThat(ResponseFormat.fromAccept("text/html, application/x-ndjson;q=0.9, */*;q=0.1"))
+                .isEqualTo(ResponseFormat.NDJSON);
+        assertThat(ResponseFormat.fromAccept("application/json, application/x-ndjson;q=0.5"))
+                .isEqualTo(ResponseFormat.JSON);
+        assertThat(ResponseFormat.fromAccept("application/x-ndjson;q=0, application/json;q=0.5"))
+                .isEqualTo(ResponseFormat.JSON);
+        assertThat(ResponseFormat.fromAccept("*/*;q=0.8, application/x-ndjson;q=0.9"))
+                .isEqualTo(ResponseFormat.NDJSON);
+    }
+}
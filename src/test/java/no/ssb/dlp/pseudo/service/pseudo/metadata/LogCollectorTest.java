@@ -0,0 +1,32 @@
+package no.ssb.dlp.pseudo.service.pseudo.metadata;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogCollectorTest {
+
+    @Test
+    void keepFirstEntriesAndCountTheRest() {
+        LogCollector collector = new LogCollector(2);
+        AtomicInteger formatted = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            final int n = i;
+            collector.add("MISSING_SID", () -> {
+                formatted.incrementAndGet();
+                return "No SID-mapping found for fnr " + n;
+            });
+        }
+        collector.add("warning", () -> "Something else");
+
+        assertThat(collector.getEntries()).containsExactly(
+                "No SID-mapping found for fnr 0",
+                "No SID-mapping found for fnr 1",
+                "3 more MISSING_SID log entries suppressed",
+                "1 more warning log entries suppressed");
+        assertThat(formatted).hasValue(2);
+    }
+}
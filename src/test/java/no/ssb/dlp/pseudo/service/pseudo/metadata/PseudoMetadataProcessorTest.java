@@ -0,0 +1,84 @@
+package no.ssb.dlp.pseudo.service.pseudo.metadata;
+
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PseudoMetadataProcessorTest {
+
+    @Test
+    void countMetricsFromConcurrentValues() throws JSONException {
+        PseudoMetadataProcessor processor = new PseudoMetadataProcessor("correlation-id");
+
+        Flowable.range(0, 100_000)
+                .parallel(4)
+                .runOn(Schedulers.computation())
+                .doOnNext(i -> processor.addMetric(i % 10 == 0 ? FieldMetric.MISSING_SID : FieldMetric.MAPPED_SID))
+                .sequential()
+                .blockingSubscribe();
+        processor.onCompleteAll();
+
+        List<String> metrics = Flowable.fromPublisher(processor.getMetrics()).toList().blockingGet();
+        assertThat(metrics).hasSize(2);
+        JSONAssert.assertEquals("{\"MISSING_SID\":10000}", metrics.get(0), JSONCompareMode.STRICT);
+        JSONAssert.assertEquals("{\"MAPPED_SID\":90000}", metrics.get(1), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    void emitMetricsOnlyOnCompletion() throws JSONException {
+        PseudoMetadataProcessor processor = new PseudoMetadataProcessor("correlation-id");
+        processor.addMetric(FieldMetric.NULL_VALUE);
+
+        var subscriber = Flowable.fromPublisher(processor.getMetrics()).test();
+        subscriber.assertNoValues().assertNotComplete();
+
+        processor.onCompleteAll();
+        subscriber.assertValueCount(1).assertComplete();
+        JSONAssert.assertEquals("{\"NULL_VALUE\":1}", subscriber.values().getFirst(), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    void countMetricsOfBatch() throws JSONException {
+        PseudoMetadataProcessor processor = new PseudoMetadataProcessor("correlation-id");
+        processor.addMetric(FieldMetric.MISSING_SID);
+        long[] batch = new long[FieldMetric.values().length];
+
+        String result = processor.countBatchMetrics(batch, () -> {
+            processor.addMetric(FieldMetric.MISSING_SID);
+            processor.addMetric(FieldMetric.FPE_LIMITATION);
+            return "done";
+        });
+        processor.addMetric(FieldMetric.FPE_LIMITATION);
+
+        assertThat(result).isEqualTo("done");
+        assertThat(batch[FieldMetric.MISSING_SID.ordinal()]).isEqualTo(1);
+        assertThat(batch[FieldMetric.FPE_LIMITATION.ordinal()]).isEqualTo(1);
+        processor.onCompleteAll();
+        List<String> metrics = Flowable.fromPublisher(processor.getMetrics()).toList().blockingGet();
+        JSONAssert.assertEquals("{\"FPE_LIMITATION\":2}", metrics.get(0), JSONCompareMode.STRICT);
+        JSONAssert.assertEquals("{\"MISSING_SID\":2}", metrics.get(1), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    void registerMetadataOncePerPath() {
+        PseudoMetadataProcessor processor = new PseudoMetadataProcessor("correlation-id");
+        FieldMetadata fnr = FieldMetadata.builder().shortName("fnr").dataElementPath("fnr").build();
+        FieldMetadata name = FieldMetadata.builder().shortName("name").dataElementPath("name").build();
+
+        for (int i = 0; i < 3; i++) {
+            processor.addMetadata(fnr);
+            processor.addMetadata(name);
+        }
+        processor.addMetadata(fnr.toBuilder().build());
+        processor.onCompleteAll();
+
+        assertThat(Flowable.fromPublisher(processor.getMetadata()).toList().blockingGet()).hasSize(2);
+    }
+}
@@ -0,0 +1,79 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.core.async.publisher.Publishers;
+import io.reactivex.Flowable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingSidServiceTest {
+
+    private static final SidInfo SID_INFO_1 = SidInfo.builder().fnr("11854898347").snr("0001ha3").build();
+    private static final SidInfo SID_INFO_2 = SidInfo.builder().fnr("01839899544").snr("0006kh2").build();
+
+    @Mock
+    private ExternalSidService externalSidService;
+
+    private CachingSidService sidService;
+
+    @BeforeEach
+    void setUp() {
+        sidService = new CachingSidService(externalSidService, new SidLookupCacheConfig(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void onlyLookUpMissesInBatch() {
+        when(externalSidService.lookupFnr(List.of("11854898347"), Optional.empty()))
+                .thenReturn(Publishers.just(Map.of("11854898347", SID_INFO_1)));
+        when(externalSidService.lookupFnr(List.of("01839899544"), Optional.empty()))
+                .thenReturn(Publishers.just(Map.of("01839899544", SID_INFO_2)));
+
+        Flowable.fromPublisher(sidService.lookupFnr(List.of("11854898347"), Optional.empty())).blockingFirst();
+        Map<String, SidInfo> result = Flowable.fromPublisher(
+                sidService.lookupFnr(List.of("11854898347", "01839899544"), Optional.empty())).blockingFirst();
+
+        assertEquals(Map.of("11854898347", SID_INFO_1, "01839899544", SID_INFO_2), result);
+        verify(externalSidService, times(1)).lookupFnr(eq(List.of("11854898347")), any(Optional.class));
+        verify(externalSidService, times(1)).lookupFnr(eq(List.of("01839899544")), any(Optional.class));
+    }
+
+    @Test
+    void cacheMappingsPerSnapshot() {
+        when(externalSidService.lookupFnr(eq(List.of("11854898347")), any(Optional.class)))
+                .thenReturn(Publishers.just(Map.of("11854898347", SID_INFO_1)));
+
+        Flowable.fromPublisher(sidService.lookupFnr(List.of("11854898347"), Optional.empty())).blockingFirst();
+        Flowable.fromPublisher(sidService.lookupFnr(List.of("11854898347"), Optional.of("2023-04-25"))).blockingFirst();
+        Flowable.fromPublisher(sidService.lookupFnr(List.of("11854898347"), Optional.of("2023-04-25"))).blockingFirst();
+
+        verify(externalSidService, times(2)).lookupFnr(eq(List.of("11854898347")), any(Optional.class));
+    }
+
+    @Test
+    void lookUpAgainAfterInvalidation() {
+        when(externalSidService.lookupFnr("11854898347", Optional.empty()))
+                .thenReturn(Publishers.just(SID_INFO_1));
+
+        Flowable.fromPublisher(sidService.lookupFnr("11854898347", Optional.empty())).blockingFirst();
+        Flowable.fromPublisher(sidService.lookupFnr("11854898347", Optional.empty())).blockingFirst();
+        sidService.invalidateAll();
+        Flowable.fromPublisher(sidService.lookupFnr("11854898347", Optional.empty())).blockingFirst();
+
+        verify(externalSidService, times(2)).lookupFnr("11854898347", Optional.empty());
+    }
+}
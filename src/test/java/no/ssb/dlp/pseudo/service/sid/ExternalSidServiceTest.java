@@ -3,12 +3,13 @@ package no.ssb.dlp.pseudo.service.sid;
 import io.micronaut.core.async.publisher.Publishers;
 import io.micronaut.test.annotation.MockBean;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.reactivex.Flowable;
 import org.junit.jupiter.api.Test;
 
 import jakarta.inject.Inject;
 
-import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.mockito.Mockito.*;
@@ -35,16 +36,13 @@ public class ExternalSidServiceTest {
     @Test
     public void testInvokeMultiFnr() {
         // sidService should call our sidClient mock
-        when(sidClient.lookup(any(MultiSidRequest.class))).thenReturn(Publishers.just(
-                MultiSidResponse.builder().mapping(MultiSidResponse.Mapping.builder()
-                        .fnrList(Arrays.asList("01839899544","11854898347"))
-                        .fnr(Arrays.asList("01839899544","11854898347"))
-                        .snr(Arrays.asList("0006kh2","0001ha3"))
-                        .build()).build())
+        when(sidClient.lookupMappings(any(MultiSidRequest.class))).thenReturn(Publishers.just(new SidMappings(Map.of(
+                "01839899544", SidInfo.builder().fnr("01839899544").snr("0006kh2").build(),
+                "11854898347", SidInfo.builder().fnr("11854898347").snr("0001ha3").build())))
         );
-        sidService.lookupFnr(List.of("11854898347"), Optional.empty());
+        Flowable.fromPublisher(sidService.lookupFnr(List.of("11854898347"), Optional.empty())).blockingFirst();
 
-        verify(sidClient, times(1)).lookup(any(MultiSidRequest.class));
+        verify(sidClient, times(1)).lookupMappings(any(MultiSidRequest.class));
     }
 
     @Test
@@ -60,16 +58,13 @@ public class ExternalSidServiceTest {
     @Test
     public void testInvokeMultiSnr() {
         // sidService should call our sidClient mock
-        when(sidClient.lookup(any(MultiSidRequest.class))).thenReturn(Publishers.just(
-                MultiSidResponse.builder().mapping(MultiSidResponse.Mapping.builder()
-                        .snrList(Arrays.asList("0006kh2", "0001ha3"))
-                        .snr(List.of("0006kh2", "0001ha3"))
-                        .fnr(List.of("01839899544","11854898347"))
-                        .build()).build())
+        when(sidClient.lookupMappings(any(MultiSidRequest.class))).thenReturn(Publishers.just(new SidMappings(Map.of(
+                "0006kh2", SidInfo.builder().fnr("01839899544").snr("0006kh2").build(),
+                "0001ha3", SidInfo.builder().fnr("11854898347").snr("0001ha3").build())))
         );
-        sidService.lookupSnr(List.of("0001ha3"),Optional.empty());
+        Flowable.fromPublisher(sidService.lookupSnr(List.of("0001ha3"),Optional.empty())).blockingFirst();
 
-        verify(sidClient, times(1)).lookup(any(MultiSidRequest.class));
+        verify(sidClient, times(1)).lookupMappings(any(MultiSidRequest.class));
     }
 
     @MockBean(SidClient.class)
@@ -0,0 +1,54 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micronaut.serde.ObjectMapper;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@MicronautTest
+class MultiSidResponseDeserializerTest {
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Test
+    void decodeBatchResponse() throws IOException {
+        String json = """
+                {
+                  "mapping": {
+                    "fnrList": ["11854898347", "01839899544"],
+                    "fnr": ["11854898347", "01839899545"],
+                    "snr": ["0001ha3", null],
+                    "unknown": {"a": [1, 2]}
+                  },
+                  "missing": ["01839899544"],
+                  "datasetExtractionSnapshotTime": "2023-04-25"
+                }
+                """;
+
+        MultiSidResponse response = objectMapper.readValue(json, MultiSidResponse.class);
+
+        assertThat(response.getMapping().fnrList()).containsExactly("11854898347", "01839899544");
+        assertThat(response.getMapping().snrList()).isNull();
+        assertThat(response.getMissing()).containsExactly("01839899544");
+        assertThat(response.getDatasetExtractionSnapshotTime()).isEqualTo("2023-04-25");
+        assertThat(response.toMap()).isEqualTo(Map.of(
+                "11854898347", new SidInfo("11854898347", "0001ha3", "2023-04-25"),
+                "01839899544", new SidInfo("01839899545", null, "2023-04-25")));
+    }
+
+    @Test
+    void decodeResponseWithoutMapping() throws IOException {
+        MultiSidResponse response = objectMapper.readValue("{\"mapping\": null, \"missing\": []}",
+                MultiSidResponse.class);
+
+        assertThat(response.getMapping()).isNull();
+        assertThat(response.getMissing()).isEmpty();
+        assertThat(response.toMap()).isEmpty();
+    }
+}
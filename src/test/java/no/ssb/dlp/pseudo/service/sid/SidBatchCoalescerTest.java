@@ -0,0 +1,162 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Publisher;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SidBatchCoalescerTest {
+
+    @Mock
+    private SidClient sidClient;
+
+    private SidPartitionController partitionController;
+    private SidBatchCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        SidCoalescingConfig config = new SidCoalescingConfig();
+        config.setMaxConcurrentBatches(1);
+        partitionController = new SidPartitionController(new SidPartitionConfig(), new SimpleMeterRegistry());
+        coalescer = new SidBatchCoalescer(sidClient, config, partitionController);
+    }
+
+    @Test
+    void shareInFlightLookupsAndMergeQueuedLookups() {
+        PublishProcessor<SidMappings> first = PublishProcessor.create();
+        PublishProcessor<SidMappings> second = PublishProcessor.create();
+        when(sidClient.lookupMappings(any(MultiSidRequest.class))).thenReturn(first, second);
+
+        TestSubscriber<Map<String, SidInfo>> a = Flowable.fromPublisher(
+                coalescer.lookup(List.of("11854898347", "01839899544"), Optional.empty(), true)).test();
+        TestSubscriber<Map<String, SidInfo>> b = Flowable.fromPublisher(
+                coalescer.lookup(List.of("01839899544", "11854898348"), Optional.empty(), true)).test();
+        TestSubscriber<Map<String, SidInfo>> c = Flowable.fromPublisher(
+                coalescer.lookup(List.of("11854898349"), Optional.empty(), true)).test();
+
+        // Only the first lookup is sent while it is in flight
+        verify(sidClient, times(1)).lookupMappings(any(MultiSidRequest.class));
+        first.onNext(response(List.of("11854898347", "01839899544"), List.of("0001ha3", "0006kh2")));
+        first.onComplete();
+
+        // The new identifiers of the other lookups are sent together
+        ArgumentCaptor<MultiSidRequest> requests = ArgumentCaptor.forClass(MultiSidRequest.class);
+        verify(sidClient, times(2)).lookupMappings(requests.capture());
+        assertThat(requests.getAllValues().get(1).fnrList()).containsExactly("11854898348", "11854898349");
+        second.onNext(response(List.of("11854898348", "11854898349"), List.of("0001ha4", "0001ha5")));
+        second.onComplete();
+
+        a.awaitTerminalEvent();
+        b.awaitTerminalEvent();
+        c.awaitTerminalEvent();
+        assertThat(a.values().getFirst()).containsOnlyKeys("11854898347", "01839899544");
+        assertThat(b.values().getFirst().get("01839899544").snr()).isEqualTo("0006kh2");
+        assertThat(b.values().getFirst().get("11854898348").snr()).isEqualTo("0001ha4");
+        assertThat(c.values().getFirst().get("11854898349").snr()).isEqualTo("0001ha5");
+    }
+
+    @Test
+    void failAllLookupsSharingAFailedRequest() {
+        PublishProcessor<SidMappings> first = PublishProcessor.create();
+        when(sidClient.lookupMappings(any(MultiSidRequest.class))).thenReturn(first);
+
+        TestSubscriber<Map<String, SidInfo>> a = Flowable.fromPublisher(
+                coalescer.lookup(List.of("11854898347"), Optional.of("2023-04-25"), true)).test();
+        TestSubscriber<Map<String, SidInfo>> b = Flowable.fromPublisher(
+                coalescer.lookup(List.of("11854898347"), Optional.of("2023-04-25"), true)).test();
+        first.onError(new HttpClientResponseException("Not found", HttpResponse.notFound()));
+
+        a.awaitTerminalEvent();
+        b.awaitTerminalEvent();
+        // The error of the request is passed on unwrapped, so that the status can be inspected
+        for (TestSubscriber<Map<String, SidInfo>> lookup : List.of(a, b)) {
+            lookup.assertError(HttpClientResponseException.class);
+            assertThat(((HttpClientResponseException) lookup.errors().getFirst()).getStatus())
+                    .isEqualTo(HttpStatus.NOT_FOUND);
+        }
+        verify(sidClient, times(1)).lookupMappings(any(MultiSidRequest.class));
+    }
+
+    @Test
+    void limitBatchesToPartitionSizeAndReportTheirOutcome() {
+        SidPartitionConfig partitionConfig = new SidPartitionConfig();
+        partitionConfig.setSize(4);
+        partitionConfig.setMinSize(1);
+        partitionController = new SidPartitionController(partitionConfig, new SimpleMeterRegistry());
+        coalescer = new SidBatchCoalescer(sidClient, new SidCoalescingConfig(), partitionController);
+        when(sidClient.lookupMappings(any(MultiSidRequest.class))).thenReturn(Flowable.error(
+                new HttpClientResponseException("Unavailable", HttpResponse.status(HttpStatus.SERVICE_UNAVAILABLE))));
+
+        TestSubscriber<Map<String, SidInfo>> lookup = Flowable.fromPublisher(coalescer.lookup(
+                List.of("11854898341", "11854898342", "11854898343", "11854898344", "11854898345", "11854898346"),
+                Optional.empty(), true)).test();
+
+        lookup.awaitTerminalEvent();
+        lookup.assertError(HttpClientResponseException.class);
+        ArgumentCaptor<MultiSidRequest> requests = ArgumentCaptor.forClass(MultiSidRequest.class);
+        verify(sidClient, times(2)).lookupMappings(requests.capture());
+        assertThat(requests.getAllValues().stream().map(request -> request.fnrList().size()).toList())
+                .containsExactly(4, 2);
+        // Each failed request to the SID service halves the partition size
+        assertThat(partitionController.partitionSize()).isEqualTo(1);
+    }
+
+    @Test
+    void sendANewRequestWhenTheLookupsOfAHungRequestGaveUp() {
+        PublishProcessor<SidMappings> first = PublishProcessor.create();
+        PublishProcessor<SidMappings> second = PublishProcessor.create();
+        when(sidClient.lookupMappings(any(MultiSidRequest.class))).thenReturn(first, second);
+
+        Publisher<Map<String, SidInfo>> lookup = coalescer.lookup(List.of("11854898347"), Optional.empty(), true);
+        // Nothing is requested before the lookup is subscribed to
+        verifyNoInteractions(sidClient);
+
+        TestSubscriber<Map<String, SidInfo>> timedOut = Flowable.fromPublisher(lookup)
+                .timeout(100, TimeUnit.MILLISECONDS).test();
+        timedOut.awaitTerminalEvent();
+        timedOut.assertError(TimeoutException.class);
+        // The request that no lookup waits for any more is cancelled
+        assertThat(first.hasSubscribers()).isFalse();
+
+        TestSubscriber<Map<String, SidInfo>> retry = Flowable.fromPublisher(lookup).test();
+        verify(sidClient, times(2)).lookupMappings(any(MultiSidRequest.class));
+        second.onNext(response(List.of("11854898347"), List.of("0001ha3")));
+        second.onComplete();
+
+        retry.awaitTerminalEvent();
+        assertThat(retry.values().getFirst().get("11854898347").snr()).isEqualTo("0001ha3");
+    }
+
+    private static SidMappings response(List<String> fnrList, List<String> snr) {
+        Map<String, SidInfo> sidInfos = new HashMap<>();
+        for (int i = 0; i < fnrList.size(); i++) {
+            sidInfos.put(fnrList.get(i), new SidInfo(fnrList.get(i), snr.get(i), null));
+        }
+        return new SidMappings(sidInfos);
+    }
+}
@@ -0,0 +1,59 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.context.annotation.Property;
+import io.micronaut.test.annotation.MockBean;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.reactivex.Flowable;
+import no.ssb.dapla.dlp.pseudo.func.PseudoFuncInput;
+import no.ssb.dapla.dlp.pseudo.func.map.Mapper;
+import no.ssb.dlp.pseudo.service.Application;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Test the retries of {@link SidMapper} against the {@link ExternalSidService}, so that requests that are shared by
+ * the {@link SidBatchCoalescer} are included.
+ */
+@MicronautTest
+@Property(name = "sid.mapper.partition.timeout", value = "200ms")
+@Property(name = "sid.mapper.partition.retry-backoff", value = "10ms")
+public class SidMapperRetryTest {
+
+    @Inject
+    SidClient sidClient;
+    @Inject
+    ApplicationContext context;
+
+    @Test
+    public void testRetryLookupThatTimedOut() {
+        when(sidClient.lookupMappings(any(MultiSidRequest.class)))
+                .thenReturn(Flowable.never())
+                .thenReturn(Flowable.just(new SidMappings(Map.of(
+                        "11854898347", SidInfo.builder().fnr("11854898347").snr("0001ha3").build()))));
+        try (final var application = mockStatic(Application.class)) {
+            application.when(Application::getContext).thenReturn(context);
+            Mapper mapper = ServiceLoader.load(Mapper.class).findFirst().orElseThrow(() ->
+                    new RuntimeException("SidMapper class not found"));
+            mapper.setConfig(new HashMap<>());
+            mapper.init(PseudoFuncInput.of("11854898347"));
+            String mappedSid = mapper.map(PseudoFuncInput.of("11854898347")).getValue();
+
+            // The retry must send a new request rather than wait for the one that never completes
+            verify(sidClient, times(2)).lookupMappings(any(MultiSidRequest.class));
+            Assertions.assertEquals("0001ha3", mappedSid);
+        }
+    }
+
+    @MockBean(SidClient.class)
+    SidClient sidClient() {
+        return mock(SidClient.class);
+    }
+}
@@ -1,8 +1,11 @@
 package no.ssb.dlp.pseudo.service.sid;
 
 import io.micronaut.context.ApplicationContext;
+import io.micronaut.context.annotation.Property;
 import io.micronaut.core.async.publisher.Publishers;
 import io.micronaut.test.annotation.MockBean;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import nl.altindag.log.LogCaptor;
 import no.ssb.dapla.dlp.pseudo.func.PseudoFuncInput;
@@ -13,6 +16,7 @@ import no.ssb.dapla.dlp.pseudo.func.map.Mapper;
 import no.ssb.dlp.pseudo.service.Application;
 import org.apache.groovy.util.Maps;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import jakarta.inject.Inject;
@@ -21,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static no.ssb.dlp.pseudo.service.sid.SidMapper.*;
 import static org.mockito.Mockito.*;
@@ -30,15 +35,24 @@ import static org.mockito.Mockito.*;
  * {@link Application} class.
  */
 @MicronautTest
+@Property(name = "sid.mapper.partition.size", value = "2")
 public class SidMapperTest {
 
     @Inject
     SidService sidService;
     @Inject
     ApplicationContext context;
+    @Inject
+    SidSnapshotCatalog snapshotCatalog;
 
     LogCaptor logCaptor = LogCaptor.forClass(SidMapper.class);
 
+    @BeforeEach
+    void setUp() {
+        // The SidService mock is recreated for each test, so make sure the snapshots are fetched from it
+        snapshotCatalog.invalidate();
+    }
+
     @Test
     public void testInvokeMapperFunc() {
         when(sidService.lookupFnr(anyList(), any(Optional.class))).thenReturn(Publishers.just(
@@ -59,6 +73,58 @@ public class SidMapperTest {
         }
     }
 
+    @Test
+    public void testRetryFailedLookup() {
+        when(sidService.lookupFnr(anyList(), any(Optional.class)))
+                .thenReturn(Flowable.error(new RuntimeException("SID service unavailable")))
+                .thenReturn(Publishers.just(
+                        Maps.of("11854898347", new SidInfo.SidInfoBuilder().snr("0001ha3").build())));
+        try (final var application = mockStatic(Application.class)) {
+            application.when(Application::getContext).thenReturn(context);
+            Mapper mapper = ServiceLoader.load(Mapper.class).findFirst().orElseThrow(() ->
+                    new RuntimeException("SidMapper class not found"));
+            mapper.setConfig(new HashMap<>());
+            mapper.init(PseudoFuncInput.of("11854898347"));
+            String mappedSid = mapper.map(PseudoFuncInput.of("11854898347")).getValue();
+
+            verify(sidService, times(2)).lookupFnr(anyList(), eq(Optional.empty()));
+            Assertions.assertEquals("0001ha3", mappedSid);
+        }
+    }
+
+    @Test
+    public void testLookupPartitionsConcurrently() {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        when(sidService.lookupFnr(anyList(), any(Optional.class))).thenAnswer(invocation -> {
+            List<String> fnrs = invocation.getArgument(0);
+            return Flowable.fromCallable(() -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(200);
+                inFlight.decrementAndGet();
+                Map<String, SidInfo> sidInfos = new HashMap<>();
+                fnrs.forEach(fnr -> sidInfos.put(fnr, new SidInfo.SidInfoBuilder().snr("snr-" + fnr).build()));
+                return sidInfos;
+            }).subscribeOn(Schedulers.io());
+        });
+        final List<String> fnrs = List.of("11854898341", "11854898342", "11854898343", "11854898344",
+                "11854898345", "11854898346");
+        try (final var application = mockStatic(Application.class)) {
+            application.when(Application::getContext).thenReturn(context);
+            Mapper mapper = ServiceLoader.load(Mapper.class).findFirst().orElseThrow(() ->
+                    new RuntimeException("SidMapper class not found"));
+            mapper.setConfig(new HashMap<>());
+            fnrs.forEach(fnr -> mapper.init(PseudoFuncInput.of(fnr)));
+            for (String fnr : fnrs) {
+                Assertions.assertEquals("snr-" + fnr, mapper.map(PseudoFuncInput.of(fnr)).getValue());
+            }
+
+            // One request per partition of 2 identifiers, and the requests overlap in time
+            verify(sidService, times(3)).lookupFnr(anyList(), eq(Optional.empty()));
+            Assertions.assertTrue(maxInFlight.get() > 1, "Partitions must be looked up concurrently");
+        }
+    }
+
     @Test
     public void testInvokeRestoreFunc(){
         when(sidService.lookupSnr(anyList(), any(Optional.class))).thenReturn(Publishers.just(
@@ -100,6 +166,23 @@ public class SidMapperTest {
             Assertions.assertEquals("0001ha3", mappedSid);
         }
     }
+
+    @Test
+    public void testReuseSnapshotsAcrossMappers() {
+        when(sidService.getSnapshots()).thenReturn(Publishers.just(
+                SnapshotInfo.builder().items(List.of("2023-04-25")).build()
+        ));
+        try (final var application = mockStatic(Application.class)) {
+            application.when(Application::getContext).thenReturn(context);
+            for (String snapshotDate : List.of("2023-04-25", "2023-05-01")) {
+                Mapper mapper = ServiceLoader.load(Mapper.class).findFirst().orElseThrow(() ->
+                        new RuntimeException("SidMapper class not found"));
+                mapper.setConfig(Map.of("snapshotDate", snapshotDate));
+            }
+            verify(sidService, times(1)).getSnapshots();
+        }
+    }
+
     @Test
     public void testMapVersionEarlierThanAvailable() {
         when(sidService.getSnapshots()).thenReturn(Publishers.just(
@@ -0,0 +1,48 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micronaut.serde.ObjectMapper;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@MicronautTest
+class SidMappingsDeserializerTest {
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Test
+    void decodeBatchResponseIntoMap() throws IOException {
+        String json = """
+                {
+                  "datasetExtractionSnapshotTime": "2023-04-25",
+                  "missing": ["01839899544"],
+                  "mapping": {
+                    "snr": ["0001ha3", null],
+                    "unknown": {"a": [1, 2]},
+                    "snrList": null,
+                    "fnrList": ["11854898347", "01839899544"],
+                    "fnr": ["11854898347", "01839899545"]
+                  }
+                }
+                """;
+
+        SidMappings mappings = objectMapper.readValue(json, SidMappings.class);
+
+        assertThat(mappings.sidInfos()).isEqualTo(Map.of(
+                "11854898347", new SidInfo("11854898347", "0001ha3", "2023-04-25"),
+                "01839899544", new SidInfo("01839899545", null, "2023-04-25")));
+    }
+
+    @Test
+    void decodeResponseWithoutMapping() throws IOException {
+        SidMappings mappings = objectMapper.readValue("{\"mapping\": null, \"missing\": []}", SidMappings.class);
+
+        assertThat(mappings.sidInfos()).isEmpty();
+    }
+}
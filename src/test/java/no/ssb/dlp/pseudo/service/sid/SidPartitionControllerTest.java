@@ -0,0 +1,66 @@
+package no.ssb.dlp.pseudo.service.sid;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SidPartitionControllerTest {
+
+    @Test
+    void growOnFastRequests() {
+        SidPartitionConfig config = config();
+        config.setMaxSize(20_000);
+        SidPartitionController controller = new SidPartitionController(config, new SimpleMeterRegistry());
+
+        controller.onSuccess(10_000, Duration.ofSeconds(1));
+        assertThat(controller.partitionSize()).isEqualTo(11_000);
+
+        // Small partitions say little about the capacity of the SID service
+        controller.onSuccess(100, Duration.ofSeconds(1));
+        assertThat(controller.partitionSize()).isEqualTo(11_000);
+    }
+
+    @Test
+    void shrinkOnSlowOrFailedRequests() {
+        SidPartitionController controller = new SidPartitionController(config(), new SimpleMeterRegistry());
+
+        controller.onSuccess(10_000, Duration.ofSeconds(12));
+        assertThat(controller.partitionSize()).isEqualTo(8_333);
+        controller.onSuccess(8_333, Duration.ofSeconds(60));
+        assertThat(controller.partitionSize()).isEqualTo(4_166);
+        controller.onFailure();
+        assertThat(controller.partitionSize()).isEqualTo(2_083);
+        for (int i = 0; i < 10; i++) {
+            controller.onFailure();
+        }
+        assertThat(controller.partitionSize()).isEqualTo(100);
+    }
+
+    @Test
+    void keepSizeIfNotAdaptive() {
+        SidPartitionConfig config = config();
+        config.setAdaptive(false);
+        SidPartitionController controller = new SidPartitionController(config, new SimpleMeterRegistry());
+
+        controller.onSuccess(10_000, Duration.ofSeconds(60));
+        controller.onFailure();
+        assertThat(controller.partitionSize()).isEqualTo(10_000);
+    }
+
+    @Test
+    void doubleBackoffForEachRetry() {
+        SidPartitionController controller = new SidPartitionController(config(), new SimpleMeterRegistry());
+
+        assertThat(controller.backoff(0)).isEqualTo(Duration.ofMillis(500));
+        assertThat(controller.backoff(2)).isEqualTo(Duration.ofSeconds(2));
+    }
+
+    private static SidPartitionConfig config() {
+        SidPartitionConfig config = new SidPartitionConfig();
+        config.setSize(10_000);
+        return config;
+    }
+}
@@ -0,0 +1,38 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import no.ssb.dlp.pseudo.service.sid.SidIndexUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SidCacheTest {
+
+    private final SidCache sidCache = new SidCache(new SidIndexConfig());
+
+    @Test
+    void lookupsFailUntilTheFirstIndexIsPublished() {
+        assertThat(sidCache.getState()).isEqualTo(SidCache.State.NOT_INITIALIZED);
+        assertThatThrownBy(() -> sidCache.getCurrentSnrForFnr("11854898347"))
+                .isInstanceOf(SidIndexUnavailableException.class);
+
+        sidCache.publish(sidCache.newIndex());
+
+        assertThat(sidCache.getState()).isEqualTo(SidCache.State.INITIALIZED);
+        assertThat(sidCache.getCurrentSnrForFnr("11854898347")).isEmpty();
+    }
+
+    @Test
+    void lookupsUseThePublishedIndexWhileANewIndexIsLoaded() {
+        SidIndex first = sidCache.newIndex();
+        first.register("11854898347", "0001ha3", "0001ha3", "11854898347");
+        sidCache.publish(first);
+
+        SidIndex second = sidCache.newIndex();
+        second.register("11854898347", "0001ha4", "0001ha4", "11854898347");
+        assertThat(sidCache.getCurrentSnrForFnr("11854898347")).contains("0001ha3");
+
+        sidCache.publish(second);
+        assertThat(sidCache.getCurrentSnrForFnr("11854898347")).contains("0001ha4");
+    }
+}
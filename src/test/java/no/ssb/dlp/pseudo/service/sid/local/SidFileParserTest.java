@@ -0,0 +1,36 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SidFileParserTest {
+
+    private static final String SID_FILE = "src/test/resources/freg/snr-kat-sample";
+
+    @ParameterizedTest
+    @ValueSource(ints = {8 * 1024 * 1024, 200, 10})
+    void parseSidFileRegardlessOfChunkSize(int chunkSize) throws IOException {
+        SidIndexConfig config = new SidIndexConfig();
+        config.setLoadChunkSize(chunkSize);
+        config.setLoadParallelism(3);
+        SidIndex index = new SidIndex(16, false);
+
+        try (InputStream inputStream = new FileInputStream(SID_FILE)) {
+            assertThat(new SidFileParser(config).parse(inputStream, index)).isEqualTo(11);
+        }
+
+        assertThat(index.size()).isEqualTo(10);
+        assertThat(index.getCurrentSnrForFnr("11854898347")).isEqualTo("0001ha3");
+        assertThat(index.getCurrentSnrForFnr("01839899544")).isEqualTo("0006kh2");
+        assertThat(index.getCurrentFnrForSnr("0009vrm")).isEqualTo("44859201188");
+        // The last line has no current fnr, and must not replace the mapping of the line before it
+        assertThat(index.getCurrentFnrForSnr("000koqz")).isEqualTo("57858201561");
+        assertThat(index.getCurrentSnrForFnr("export_format")).isNull();
+    }
+}
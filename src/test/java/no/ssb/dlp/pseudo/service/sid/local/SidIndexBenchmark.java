@@ -0,0 +1,86 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk lookups against a SID index of realistic size (10M mappings). About one in ten of the looked up fnrs has no
+ * mapping.
+ *
+ * <p>Run with: <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=no.ssb.dlp.pseudo.service.sid.local.SidIndexBenchmark</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SidIndexBenchmark {
+
+    private static final int INDEX_SIZE = 10_000_000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int batchSize;
+
+    @Param({"false", "true"})
+    private boolean offHeap;
+
+    private SidIndex index;
+    private List<String> fnrs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        index = new SidIndex(INDEX_SIZE, offHeap);
+        for (int i = 0; i < INDEX_SIZE; i++) {
+            index.register(fnr(i), snr(i), snr(i), fnr(i));
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        fnrs = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            fnrs.add(fnr(random.nextInt(INDEX_SIZE + INDEX_SIZE / 10)));
+        }
+    }
+
+    @Benchmark
+    public List<String> bulkLookup() {
+        return index.getCurrentSnrsForFnrs(fnrs, false);
+    }
+
+    @Benchmark
+    public List<String> parallelBulkLookup() {
+        return index.getCurrentSnrsForFnrs(fnrs, true);
+    }
+
+    private static String fnr(int i) {
+        return "%011d".formatted(10_000_000_000L + i * 7L);
+    }
+
+    private static String snr(int i) {
+        return Integer.toString(i, 36);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SidIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import io.micronaut.objectstorage.googlecloud.GoogleCloudStorageEntry;
+import io.micronaut.objectstorage.googlecloud.GoogleCloudStorageOperations;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SidIndexSnapshotStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final GoogleCloudStorageOperations objectStorage = mock(GoogleCloudStorageOperations.class);
+    private SidIndexSnapshotStore store;
+
+    @BeforeEach
+    void setUp() {
+        SidIndexConfig config = new SidIndexConfig();
+        config.setFilename("snapshots/sid-index");
+        config.setLocalDirectory(tempDir.resolve("local").toString());
+        store = new SidIndexSnapshotStore(config, objectStorage);
+    }
+
+    private ByteArrayInputStream remoteSnapshot(String sourceChecksum) throws IOException {
+        SidIndex index = new SidIndex(16, false);
+        index.register("11854898347", "0001ha3", "0001ha3", "11854898347");
+        Path snapshot = tempDir.resolve("remote");
+        SidIndexSnapshot.write(index, sourceChecksum, snapshot);
+        ByteArrayInputStream remote = new ByteArrayInputStream(Files.readAllBytes(snapshot));
+        GoogleCloudStorageEntry entry = mock(GoogleCloudStorageEntry.class);
+        when(entry.getInputStream()).thenReturn(remote);
+        when(objectStorage.retrieve("snapshots/sid-index")).thenReturn(Optional.of(entry));
+        return remote;
+    }
+
+    @Test
+    void downloadMatchingRemoteSnapshot() throws IOException {
+        remoteSnapshot("source-md5");
+
+        Optional<SidIndex> index = store.load("source-md5");
+
+        assertThat(index).isPresent();
+        assertThat(index.get().getCurrentSnrForFnr("11854898347")).isEqualTo("0001ha3");
+    }
+
+    @Test
+    void onlyReadHeaderOfRemoteSnapshotOfAnotherSource() throws IOException {
+        ByteArrayInputStream remote = remoteSnapshot("old-md5");
+        int remoteSize = remote.available();
+
+        assertThat(store.load("source-md5")).isEmpty();
+        assertThat(remoteSize - remote.available()).isEqualTo(SidIndexSnapshot.HEADER_SIZE);
+        assertThat(tempDir.resolve("local")).doesNotExist();
+    }
+
+    @Test
+    void deleteTempFileWhenSaveFails() throws IOException {
+        // A non-empty directory in place of the snapshot makes the final move fail
+        Path local = tempDir.resolve("local");
+        Files.createDirectories(local.resolve("sid-index"));
+        Files.writeString(local.resolve("sid-index").resolve("other"), "other");
+
+        store.save(new SidIndex(16, false), "source-md5");
+
+        try (Stream<Path> files = Files.list(local)) {
+            assertThat(files).containsExactly(local.resolve("sid-index"));
+        }
+    }
+}
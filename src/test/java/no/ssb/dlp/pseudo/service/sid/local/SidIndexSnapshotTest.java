@@ -0,0 +1,55 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SidIndexSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeAndMapSnapshot() throws IOException {
+        SidIndex index = new SidIndex(16, false);
+        index.register("11854898347", "0001ha3", "0001ha3", "11854898347");
+        index.register("01839899544", "0006kh2", "0006kh1", "01839899545");
+        index.register("fnr with spaces", "snr with spaces", "snr with spaces", "fnr with spaces");
+        Path snapshot = tempDir.resolve("index");
+
+        SidIndexSnapshot.write(index, "source-md5", snapshot);
+
+        assertThat(SidIndexSnapshot.readSourceChecksum(snapshot)).contains("source-md5");
+        Optional<SidIndex> mapped = SidIndexSnapshot.read(snapshot, "source-md5");
+        assertThat(mapped).isPresent();
+        assertThat(mapped.get().size()).isEqualTo(3);
+        assertThat(mapped.get().getCurrentSnrForFnr("11854898347")).isEqualTo("0001ha3");
+        assertThat(mapped.get().getCurrentFnrForSnr("0006kh1")).isEqualTo("01839899545");
+        assertThat(mapped.get().getCurrentSnrForFnr("fnr with spaces")).isEqualTo("snr with spaces");
+        assertThat(mapped.get().getCurrentSnrForFnr("99999999999")).isNull();
+    }
+
+    @Test
+    void ignoreSnapshotOfAnotherSource() throws IOException {
+        Path snapshot = tempDir.resolve("index");
+        SidIndexSnapshot.write(new SidIndex(16, false), "source-md5", snapshot);
+
+        assertThat(SidIndexSnapshot.read(snapshot, "other-md5")).isEmpty();
+    }
+
+    @Test
+    void ignoreInvalidSnapshot() throws IOException {
+        Path snapshot = tempDir.resolve("index");
+        Files.write(snapshot, new byte[256]);
+
+        assertThat(SidIndexSnapshot.readSourceChecksum(snapshot)).isEmpty();
+        assertThat(SidIndexSnapshot.read(snapshot, "source-md5")).isEmpty();
+        assertThat(SidIndexSnapshot.read(tempDir.resolve("missing"), "source-md5")).isEmpty();
+    }
+}
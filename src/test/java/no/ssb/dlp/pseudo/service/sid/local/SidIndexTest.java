@@ -0,0 +1,97 @@
+package no.ssb.dlp.pseudo.service.sid.local;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SidIndexTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"11854898347", "01839899544", "0001ha3", "00073n4", "0", "ABC-_xyz"})
+    void encodeAndDecodeIdentifiers(String id) {
+        long encoded = SidKeyCodec.encode(id);
+        assertThat(encoded).isNotEqualTo(SidKeyCodec.NONE);
+        assertThat(SidKeyCodec.decode(encoded)).isEqualTo(id);
+    }
+
+    @Test
+    void distinguishIdentifiersWithLeadingZeros() {
+        assertThat(SidKeyCodec.encode("0123")).isNotEqualTo(SidKeyCodec.encode("123"));
+    }
+
+    @Test
+    void lookupRegisteredMappings() {
+        SidIndex index = new SidIndex(2, false);
+        index.register("11854898347", "0001ha3", "0001ha3", "11854898347");
+        index.register("01839899544", "0006kh2", "0006kh1", "01839899545");
+        // Can not be packed, is kept in the overflow map
+        index.register("fnr with spaces", "snr with spaces", "snr with spaces", "fnr with spaces");
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.getCurrentSnrForFnr("11854898347")).isEqualTo("0001ha3");
+        assertThat(index.getCurrentSnrForFnr("01839899544")).isEqualTo("0006kh2");
+        assertThat(index.getCurrentFnrForSnr("0006kh1")).isEqualTo("01839899545");
+        assertThat(index.getCurrentSnrForFnr("fnr with spaces")).isEqualTo("snr with spaces");
+        assertThat(index.getCurrentSnrForFnr("99999999999")).isNull();
+        assertThat(index.getCurrentSnrForFnr(null)).isNull();
+    }
+
+    @Test
+    void lastRegisteredMappingWins() {
+        SidIndex index = new SidIndex(16, false);
+        // The first mapping of each fnr is packed, the second is kept in the overflow map, and the other way round
+        index.register("11854898347", "0001ha3", null, null);
+        index.register("11854898347", "snr with spaces", null, null);
+        index.register("01839899544", "snr with spaces", null, null);
+        index.register("01839899544", "0006kh2", null, null);
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.getCurrentSnrForFnr("11854898347")).isEqualTo("snr with spaces");
+        assertThat(index.getCurrentSnrForFnr("01839899544")).isEqualTo("0006kh2");
+    }
+
+    @Test
+    void removeFromTableKeepsCollidingKeysReachable() {
+        LongLongTable table = new LongLongTable(16, false);
+        for (long key = 1; key <= 1000; key++) {
+            table.put(key, key * 10);
+        }
+        for (long key = 1; key <= 1000; key += 2) {
+            table.remove(key);
+        }
+
+        assertThat(table.size()).isEqualTo(500);
+        for (long key = 1; key <= 1000; key++) {
+            assertThat(table.get(key)).isEqualTo(key % 2 == 0 ? key * 10 : LongLongTable.NO_VALUE);
+        }
+    }
+
+    @Test
+    void growBeyondExpectedSize() {
+        SidIndex index = new SidIndex(16, true);
+        for (int i = 0; i < 10_000; i++) {
+            index.register("%011d".formatted(i), "%07d".formatted(i), "%07d".formatted(i), "%011d".formatted(i));
+        }
+        assertThat(index.size()).isEqualTo(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(index.getCurrentSnrForFnr("%011d".formatted(i))).isEqualTo("%07d".formatted(i));
+        }
+    }
+
+    @Test
+    void bulkLookupIsAlignedWithInput() {
+        SidIndex index = new SidIndex(16, false);
+        index.register("11854898347", "0001ha3", "0001ha3", "11854898347");
+        index.register("01839899544", "0006kh2", "0006kh2", "01839899544");
+        List<String> fnrs = List.of("01839899544", "99999999999", "11854898347", "01839899544");
+
+        List<String> expected = Arrays.asList("0006kh2", null, "0001ha3", "0006kh2");
+        assertThat(index.getCurrentSnrsForFnrs(fnrs, false)).isEqualTo(expected);
+        assertThat(index.getCurrentSnrsForFnrs(fnrs, true)).isEqualTo(expected);
+    }
+}